@@ -0,0 +1,12 @@
+/**
+ * AccountIdAllocator interface handing out unique account ids.
+ * Implementations must be safe to call from many threads at once. Ids only need to be
+ * unique and positive, not dense, so an allocator may skip ids.
+ */
+public interface AccountIdAllocator {
+    // A fresh id never returned before; throws IllegalStateException once ids run out
+    long nextId();
+    
+    // Make sure every id handed out from now on is above the given one, e.g. after restoring accounts
+    void reserveThrough(long accountId);
+}
@@ -0,0 +1,162 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * AccountRegistry class indexing bank accounts by account number and holder name.
+ * All indexes are concurrent so accounts can be opened and looked up from worker threads.
+ * Registered accounts report balance changes to every listener added to the registry.
+ */
+public class AccountRegistry {
+    private ConcurrentHashMap<String, BankAccount> accountsByNumber;
+    private ConcurrentSkipListMap<String, Queue<BankAccount>> accountsByHolder;
+    private ConcurrentLinkedQueue<BankAccount> accounts;
+    private CopyOnWriteArrayList<LedgerListener> listeners;
+    private LedgerListener dispatcher;
+    
+    public AccountRegistry() {
+        accountsByNumber = new ConcurrentHashMap<>();
+        accountsByHolder = new ConcurrentSkipListMap<>();
+        accounts = new ConcurrentLinkedQueue<>();
+        listeners = new CopyOnWriteArrayList<>();
+        dispatcher = new Dispatcher();
+    }
+    
+    public void addListener(LedgerListener listener) {
+        listeners.add(listener);
+    }
+    
+    // Register a newly opened account in every index; returns false if the number is already taken
+    public boolean register(BankAccount account) {
+        if (accountsByNumber.containsKey(normalizeNumber(account.getAccountNumber()))) {
+            return false;
+        }
+        // Announce before the account becomes reachable, so listeners see the opening before any change
+        account.setListener(dispatcher);
+        dispatcher.accountOpened(account);
+        return index(account);
+    }
+    
+    // Register an account recovered from storage without announcing it as newly opened
+    public boolean restore(BankAccount account) {
+        return index(account);
+    }
+    
+    private boolean index(BankAccount account) {
+        String number = normalizeNumber(account.getAccountNumber());
+        account.setListener(dispatcher);
+        if (accountsByNumber.putIfAbsent(number, account) != null) {
+            account.setListener(LedgerListener.NONE);
+            return false;
+        }
+        
+        accountsByHolder.computeIfAbsent(holderKey(account.getAccountHolderName()), k -> new ConcurrentLinkedQueue<>())
+                .add(account);
+        accounts.add(account);
+        return true;
+    }
+    
+    // O(1) lookup by account number, e.g. "ACC1001"
+    public BankAccount findByNumber(String accountNumber) {
+        if (accountNumber == null) {
+            return null;
+        }
+        return accountsByNumber.get(normalizeNumber(accountNumber));
+    }
+    
+    // All accounts whose holder name starts with the given prefix (case-insensitive), ordered by name
+    public List<BankAccount> findByHolderPrefix(String prefix) {
+        ArrayList<BankAccount> found = new ArrayList<>();
+        if (prefix == null || prefix.trim().isEmpty()) {
+            return found;
+        }
+        
+        String from = holderKey(prefix);
+        String to = from + Character.MAX_VALUE;
+        for (Queue<BankAccount> holders : accountsByHolder.subMap(from, true, to, false).values()) {
+            found.addAll(holders);
+        }
+        return found;
+    }
+    
+    // Accounts in the order they were opened
+    public Collection<BankAccount> getAccounts() {
+        return Collections.unmodifiableCollection(accounts);
+    }
+    
+    public int size() {
+        return accountsByNumber.size();
+    }
+    
+    public boolean isEmpty() {
+        return accounts.isEmpty();
+    }
+    
+    /**
+     * Fans every account event out to the registry's listeners
+     */
+    private class Dispatcher implements LedgerListener {
+        @Override
+        public void accountOpened(BankAccount account) {
+            for (LedgerListener listener : listeners) {
+                listener.accountOpened(account);
+            }
+        }
+        
+        @Override
+        public void deposited(BankAccount account, long amount, long balanceAfter) {
+            for (LedgerListener listener : listeners) {
+                listener.deposited(account, amount, balanceAfter);
+            }
+        }
+        
+        @Override
+        public void withdrew(BankAccount account, long amount, long balanceAfter) {
+            for (LedgerListener listener : listeners) {
+                listener.withdrew(account, amount, balanceAfter);
+            }
+        }
+        
+        @Override
+        public void transferred(BankAccount source, BankAccount target, long amount,
+                                long sourceBalanceAfter, long targetBalanceAfter) {
+            for (LedgerListener listener : listeners) {
+                listener.transferred(source, target, amount, sourceBalanceAfter, targetBalanceAfter);
+            }
+        }
+        
+        @Override
+        public void transferredOut(BankAccount source, BankAccount target, long amount, long sourceBalanceAfter) {
+            for (LedgerListener listener : listeners) {
+                listener.transferredOut(source, target, amount, sourceBalanceAfter);
+            }
+        }
+        
+        @Override
+        public void transferredIn(BankAccount source, BankAccount target, long amount, long targetBalanceAfter) {
+            for (LedgerListener listener : listeners) {
+                listener.transferredIn(source, target, amount, targetBalanceAfter);
+            }
+        }
+        
+        @Override
+        public void transferredBatch(BankAccount[] sources, BankAccount[] targets, long[] amounts,
+                                     long[] sourceBalancesAfter, long[] targetBalancesAfter, int count) {
+            for (LedgerListener listener : listeners) {
+                listener.transferredBatch(sources, targets, amounts, sourceBalancesAfter, targetBalancesAfter, count);
+            }
+        }
+    }
+    
+    // Listener shared by every registered account, for components that change balances directly
+    LedgerListener listener() {
+        return dispatcher;
+    }
+    
+    private static String normalizeNumber(String accountNumber) {
+        return accountNumber.trim().toUpperCase();
+    }
+    
+    private static String holderKey(String holderName) {
+        return holderName.trim().toLowerCase();
+    }
+}
\ No newline at end of file
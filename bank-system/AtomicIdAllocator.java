@@ -0,0 +1,33 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AtomicIdAllocator class - a single lock-free counter, so ids are dense and increasing.
+ * Every allocation is one atomic increment on a shared cache line, which is fine for
+ * ordinary rates; BlockIdAllocator avoids even that for heavy concurrent account creation.
+ */
+public class AtomicIdAllocator implements AccountIdAllocator {
+    private final AtomicLong next;
+    
+    public AtomicIdAllocator(long firstId) {
+        if (firstId <= 0) {
+            throw new IllegalArgumentException("First id must be positive: " + firstId);
+        }
+        this.next = new AtomicLong(firstId);
+    }
+    
+    @Override
+    public long nextId() {
+        long id = next.getAndIncrement();
+        if (id <= 0) {
+            throw new IllegalStateException("Account ids exhausted");
+        }
+        return id;
+    }
+    
+    @Override
+    public void reserveThrough(long accountId) {
+        if (accountId < Long.MAX_VALUE) {
+            next.accumulateAndGet(accountId + 1, Math::max);
+        }
+    }
+}
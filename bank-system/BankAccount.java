@@ -1,89 +1,326 @@
-import java.util.*;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 
 /**
- * BankAccount class representing a bank account with transaction history
+ * BankAccount class representing a bank account with transaction history.
+ * All amounts are long cents (see Money). History rows live in a shared TransactionJournal;
+ * the account only keeps the index of its latest row.
+ * Deposits and withdrawals update the balance with compare-and-set, and transfers
+ * lock both accounts in account-number order, so an account can be shared by many threads.
  */
 public class BankAccount {
+    private static final String ACCOUNT_PREFIX = "ACC";
+    private static final int RECENT_TRANSACTIONS = 5;
+    private static final long FIRST_ACCOUNT_ID = 1001;
+    static final long INSUFFICIENT_FUNDS = -1;
+    private static final VarHandle BALANCE;
+    
+    static {
+        try {
+            BALANCE = MethodHandles.lookup().findVarHandle(BankAccount.class, "balance", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    
+    private long accountId;
     private String accountNumber;
     private String accountHolderName;
-    private double balance;
-    private ArrayList<Transaction> transactionHistory;
-    private static int accountCounter = 1000;
+    private volatile long balance;
+    private TransactionJournal journal;
+    private long lastJournalRow;
+    private int transactionCount;
+    private final Object historyLock = new Object();
+    private final ReentrantLock transferLock = new ReentrantLock();
+    private final ReentrantLock ledgerLock = new ReentrantLock();
+    private volatile LedgerListener listener = LedgerListener.NONE;
+    private volatile VelocityTracker velocity;
+    private static volatile AccountIdAllocator idAllocator = new AtomicIdAllocator(FIRST_ACCOUNT_ID);
     
     // Constructor
-    public BankAccount(String accountHolderName, double initialDeposit) {
-        this.accountNumber = "ACC" + (++accountCounter);
+    public BankAccount(String accountHolderName, long initialDeposit) {
+        this(accountHolderName, initialDeposit, TransactionJournal.shared());
+    }
+    
+    public BankAccount(String accountHolderName, long initialDeposit, TransactionJournal journal) {
+        this.accountId = idAllocator.nextId();
+        this.accountNumber = formatAccountNumber(accountId);
         this.accountHolderName = accountHolderName;
         this.balance = initialDeposit;
-        this.transactionHistory = new ArrayList<>();
+        this.journal = journal;
+        this.lastJournalRow = TransactionJournal.NO_ROW;
         
         // Add initial deposit transaction
         if (initialDeposit > 0) {
-            addTransaction("DEPOSIT", initialDeposit, "Initial deposit");
+            addTransaction(TransactionJournal.OPENING_DEPOSIT, initialDeposit, TransactionJournal.NO_ACCOUNT,
+                    initialDeposit);
+        }
+    }
+    
+    // Recreate an account recovered from the ledger, without an opening transaction
+    BankAccount(long accountId, String accountHolderName, long balance, TransactionJournal journal) {
+        this(accountId, accountHolderName, balance, journal, true);
+    }
+    
+    // Only recovered ids need reserving; ids passed to open() came from the allocator already
+    private BankAccount(long accountId, String accountHolderName, long balance, TransactionJournal journal,
+                        boolean recovered) {
+        if (recovered) {
+            reserveAccountIds(accountId);
+        }
+        this.accountId = accountId;
+        this.accountNumber = formatAccountNumber(accountId);
+        this.accountHolderName = accountHolderName;
+        this.balance = balance;
+        this.journal = journal;
+        this.lastJournalRow = TransactionJournal.NO_ROW;
+    }
+    
+    // Open an account under an id the caller has already allocated, e.g. to route it to a shard first
+    static BankAccount open(long accountId, String accountHolderName, long initialDeposit, TransactionJournal journal) {
+        BankAccount account = new BankAccount(accountId, accountHolderName, initialDeposit, journal, false);
+        if (initialDeposit > 0) {
+            account.addTransaction(TransactionJournal.OPENING_DEPOSIT, initialDeposit, TransactionJournal.NO_ACCOUNT,
+                    initialDeposit);
+        }
+        return account;
+    }
+    
+    static long nextAccountId() {
+        return idAllocator.nextId();
+    }
+    
+    // Make sure newly opened accounts get numbers above an id restored from storage
+    static void reserveAccountIds(long accountId) {
+        idAllocator.reserveThrough(accountId);
+    }
+    
+    // Replace the id allocator; install it before any account is opened or restored
+    public static void setIdAllocator(AccountIdAllocator allocator) {
+        idAllocator = allocator;
+    }
+    
+    public static String formatAccountNumber(long accountId) {
+        return ACCOUNT_PREFIX + accountId;
+    }
+    
+    // Account id from an account number such as "ACC1001" (any case), or -1 if it is not one
+    public static long parseAccountNumber(String accountNumber) {
+        if (accountNumber == null) {
+            return -1;
+        }
+        String number = accountNumber.trim();
+        int prefix = ACCOUNT_PREFIX.length();
+        if (number.length() <= prefix || !number.regionMatches(true, 0, ACCOUNT_PREFIX, 0, prefix)) {
+            return -1;
+        }
+        try {
+            long accountId = Long.parseLong(number.substring(prefix));
+            return accountId > 0 ? accountId : -1;
+        } catch (NumberFormatException e) {
+            return -1;
         }
     }
     
     // Deposit money
-    public boolean deposit(double amount) {
+    public boolean deposit(long amount) {
         if (amount <= 0) {
             System.out.println("Deposit amount must be positive!");
             return false;
         }
         
-        balance += amount;
-        addTransaction("DEPOSIT", amount, "Cash deposit");
-        System.out.printf("Successfully deposited $%.2f. New balance: $%.2f%n", amount, balance);
+        long newBalance = applyDeposit(amount);
+        System.out.println("Successfully deposited $" + Money.format(amount) + ". New balance: $"
+                + Money.format(newBalance));
         return true;
     }
     
     // Withdraw money
-    public boolean withdraw(double amount) {
+    public boolean withdraw(long amount) {
         if (amount <= 0) {
             System.out.println("Withdrawal amount must be positive!");
             return false;
         }
         
-        if (amount > balance) {
-            System.out.println("Insufficient funds! Current balance: $" + String.format("%.2f", balance));
+        long newBalance = applyWithdrawal(amount);
+        if (newBalance == INSUFFICIENT_FUNDS) {
+            System.out.println("Insufficient funds! Current balance: $" + Money.format(balance));
             return false;
         }
         
-        balance -= amount;
-        addTransaction("WITHDRAWAL", amount, "Cash withdrawal");
-        System.out.printf("Successfully withdrew $%.2f. New balance: $%.2f%n", amount, balance);
+        System.out.println("Successfully withdrew $" + Money.format(amount) + ". New balance: $"
+                + Money.format(newBalance));
         return true;
     }
     
     // Transfer money to another account
-    public boolean transfer(BankAccount targetAccount, double amount) {
+    public boolean transfer(BankAccount targetAccount, long amount) {
         if (amount <= 0) {
             System.out.println("Transfer amount must be positive!");
             return false;
         }
         
-        if (amount > balance) {
-            System.out.println("Insufficient funds for transfer!");
+        if (targetAccount == this) {
+            System.out.println("Cannot transfer to the same account!");
             return false;
         }
         
-        // Perform transfer
-        balance -= amount;
-        targetAccount.balance += amount;
-        
-        // Record transactions
-        addTransaction("TRANSFER_OUT", amount, "Transfer to " + targetAccount.accountNumber);
-        targetAccount.addTransaction("TRANSFER_IN", amount, "Transfer from " + this.accountNumber);
+        if (applyTransfer(targetAccount, amount) == INSUFFICIENT_FUNDS) {
+            System.out.println("Insufficient funds for transfer!");
+            return false;
+        }
         
-        System.out.printf("Successfully transferred $%.2f to %s%n", amount, targetAccount.accountNumber);
+        System.out.println("Successfully transferred $" + Money.format(amount) + " to " + targetAccount.accountNumber);
         return true;
     }
     
-    // Add transaction to history
-    private void addTransaction(String type, double amount, String description) {
-        Transaction transaction = new Transaction(type, amount, description, balance);
-        transactionHistory.add(transaction);
+    // Silent deposit for programmatic callers; amount must be positive. Returns the new balance
+    long applyDeposit(long amount) {
+        ledgerLock.lock();
+        try {
+            long newBalance = credit(amount);
+            addTransaction(TransactionJournal.DEPOSIT, amount, TransactionJournal.NO_ACCOUNT, newBalance);
+            listener.deposited(this, amount, newBalance);
+            return newBalance;
+        } finally {
+            ledgerLock.unlock();
+        }
+    }
+    
+    // Silent withdrawal; returns the new balance or INSUFFICIENT_FUNDS
+    long applyWithdrawal(long amount) {
+        ledgerLock.lock();
+        try {
+            long newBalance = debit(amount);
+            if (newBalance == INSUFFICIENT_FUNDS) {
+                return INSUFFICIENT_FUNDS;
+            }
+            addTransaction(TransactionJournal.WITHDRAWAL, amount, TransactionJournal.NO_ACCOUNT, newBalance);
+            listener.withdrew(this, amount, newBalance);
+            return newBalance;
+        } finally {
+            ledgerLock.unlock();
+        }
+    }
+    
+    // Silent transfer to a different account; returns this account's new balance or INSUFFICIENT_FUNDS
+    long applyTransfer(BankAccount targetAccount, long amount) {
+        // Always lock the lower account number first so opposing transfers cannot deadlock
+        BankAccount first = accountId < targetAccount.accountId ? this : targetAccount;
+        BankAccount second = first == this ? targetAccount : this;
+        
+        first.transferLock.lock();
+        try {
+            second.transferLock.lock();
+            try {
+                first.ledgerLock.lock();
+                second.ledgerLock.lock();
+                try {
+                    long sourceBalance = debit(amount);
+                    if (sourceBalance == INSUFFICIENT_FUNDS) {
+                        return INSUFFICIENT_FUNDS;
+                    }
+                    long targetBalance = targetAccount.credit(amount);
+                    
+                    // Record transactions
+                    addTransaction(TransactionJournal.TRANSFER_OUT, amount, targetAccount.accountId, sourceBalance);
+                    targetAccount.addTransaction(TransactionJournal.TRANSFER_IN, amount, accountId, targetBalance);
+                    listener.transferred(this, targetAccount, amount, sourceBalance, targetBalance);
+                    return sourceBalance;
+                } finally {
+                    second.ledgerLock.unlock();
+                    first.ledgerLock.unlock();
+                }
+            } finally {
+                second.transferLock.unlock();
+            }
+        } finally {
+            first.transferLock.unlock();
+        }
+    }
+    
+    // Add to the balance with a compare-and-set loop; returns the new balance
+    long credit(long amount) {
+        while (true) {
+            long current = balance;
+            long updated = Money.add(current, amount);
+            if (BALANCE.compareAndSet(this, current, updated)) {
+                return updated;
+            }
+        }
+    }
+    
+    // Subtract from the balance if funds allow; returns the new balance or INSUFFICIENT_FUNDS
+    long debit(long amount) {
+        while (true) {
+            long current = balance;
+            if (Money.compare(amount, current) > 0) {
+                return INSUFFICIENT_FUNDS;
+            }
+            long updated = Money.subtract(current, amount);
+            if (BALANCE.compareAndSet(this, current, updated)) {
+                return updated;
+            }
+        }
+    }
+    
+    // Add transaction to history by appending a journal row linked to this account's previous row
+    void addTransaction(byte type, long amount, long counterpartyId, long balanceAfter) {
+        synchronized (historyLock) {
+            lastJournalRow = journal.append(accountId, type, counterpartyId, amount, balanceAfter, lastJournalRow);
+            transactionCount++;
+            VelocityTracker tracker = velocity;
+            if (tracker != null) {
+                tracker.record(type, amount, journal.getTimestampNanos(lastJournalRow));
+            }
+        }
+    }
+    
+    // Merge archived transactions, oldest first, into the history by timestamp without touching the balance.
+    // Rows identical to one already in the chain are skipped, so importing an archive twice adds nothing.
+    // Returns the number of rows added.
+    int importHistory(byte[] types, long[] amounts, long[] counterpartyIds, long[] balancesAfter, long[] timestamps,
+                      int count) {
+        synchronized (historyLock) {
+            long[] live = latestRows(Integer.MAX_VALUE);
+            long previous = TransactionJournal.NO_ROW;
+            int added = 0;
+            int i = 0;
+            int j = 0;
+            while (i < live.length || j < count) {
+                if (j < count && (i == live.length || timestamps[j] <= journal.getTimestampNanos(live[i]))) {
+                    if (!isDuplicate(live, i, types[j], amounts[j], counterpartyIds[j], balancesAfter[j], timestamps[j])) {
+                        previous = journal.append(accountId, types[j], counterpartyIds[j], amounts[j], balancesAfter[j],
+                                timestamps[j], previous);
+                        added++;
+                    }
+                    j++;
+                } else {
+                    if (journal.getPreviousRow(live[i]) != previous) {
+                        journal.setPreviousRow(live[i], previous);
+                    }
+                    previous = live[i++];
+                }
+            }
+            lastJournalRow = previous;
+            transactionCount += added;
+            return added;
+        }
+    }
+    
+    // Whether a live row from index from on, at the same timestamp, matches the archived row field for field
+    private boolean isDuplicate(long[] live, int from, byte type, long amount, long counterpartyId, long balanceAfter,
+                                long timestampNanos) {
+        for (int i = from; i < live.length && journal.getTimestampNanos(live[i]) == timestampNanos; i++) {
+            long row = live[i];
+            if (journal.getType(row) == type && journal.getAmount(row) == amount
+                    && journal.getCounterpartyId(row) == counterpartyId && journal.getBalanceAfter(row) == balanceAfter) {
+                return true;
+            }
+        }
+        return false;
     }
     
     // Display account information
@@ -91,13 +328,14 @@ public class BankAccount {
         System.out.println("\n--- Account Information ---");
         System.out.println("Account Number: " + accountNumber);
         System.out.println("Account Holder: " + accountHolderName);
-        System.out.printf("Current Balance: $%.2f%n", balance);
-        System.out.println("Total Transactions: " + transactionHistory.size());
+        System.out.println("Current Balance: $" + Money.format(balance));
+        System.out.println("Total Transactions: " + getTransactionCount());
     }
     
     // Display transaction history
     public void displayTransactionHistory() {
-        if (transactionHistory.isEmpty()) {
+        long[] rows = latestRows(Integer.MAX_VALUE);
+        if (rows.length == 0) {
             System.out.println("No transactions found.");
             return;
         }
@@ -105,69 +343,98 @@ public class BankAccount {
         System.out.println("\n--- Transaction History ---");
         System.out.println("Account: " + accountNumber + " (" + accountHolderName + ")");
         System.out.println("-".repeat(80));
-        
-        for (Transaction transaction : transactionHistory) {
-            System.out.println(transaction);
-        }
+        printRows(rows);
     }
     
     // Display recent transactions (last 5)
     public void displayRecentTransactions() {
-        if (transactionHistory.isEmpty()) {
+        long[] rows = latestRows(RECENT_TRANSACTIONS);
+        if (rows.length == 0) {
             System.out.println("No transactions found.");
             return;
         }
         
         System.out.println("\n--- Recent Transactions (Last 5) ---");
-        int start = Math.max(0, transactionHistory.size() - 5);
-        
-        for (int i = start; i < transactionHistory.size(); i++) {
-            System.out.println(transactionHistory.get(i));
+        printRows(rows);
+    }
+    
+    // Journal rows of the newest transactions, oldest first, found by walking the account's chain
+    long[] latestRows(int limit) {
+        synchronized (historyLock) {
+            long[] rows = new long[Math.min(limit, transactionCount)];
+            long row = lastJournalRow;
+            for (int i = rows.length - 1; i >= 0; i--) {
+                rows[i] = row;
+                row = journal.getPreviousRow(row);
+            }
+            return rows;
+        }
+    }
+    
+    private void printRows(long[] rows) {
+        StringBuilder sb = new StringBuilder(8192);
+        for (long row : rows) {
+            journal.appendRow(sb, row).append(System.lineSeparator());
+            if (sb.length() >= 8192) {
+                System.out.print(sb);
+                sb.setLength(0);
+            }
         }
+        System.out.print(sb);
     }
     
     // Getters
+    public long getAccountId() { return accountId; }
     public String getAccountNumber() { return accountNumber; }
     public String getAccountHolderName() { return accountHolderName; }
-    public double getBalance() { return balance; }
-    public int getTransactionCount() { return transactionHistory.size(); }
+    public long getBalance() { return balance; }
+    public TransactionJournal getJournal() { return journal; }
+    public int getTransactionCount() {
+        synchronized (historyLock) {
+            return transactionCount;
+        }
+    }
     
-    @Override
-    public String toString() {
-        return String.format("Account: %s | Holder: %s | Balance: $%.2f", 
-                accountNumber, accountHolderName, balance);
+    // Start keeping sliding-window transaction statistics, e.g. (60, TimeUnit.SECONDS, 60).
+    // Only transactions from now on are counted; returns the tracker to query.
+    public VelocityTracker enableVelocityTracking(long window, TimeUnit unit, int buckets) {
+        VelocityTracker tracker = new VelocityTracker(window, unit, buckets);
+        velocity = tracker;
+        return tracker;
+    }
+    
+    // The tracker set up by enableVelocityTracking, or null if tracking is off
+    public VelocityTracker getVelocityTracker() {
+        return velocity;
     }
-}
-
-/**
- * Transaction class to represent individual transactions
- */
-class Transaction {
-    private String type;
-    private double amount;
-    private String description;
-    private double balanceAfter;
-    private LocalDateTime timestamp;
     
-    public Transaction(String type, double amount, String description, double balanceAfter) {
-        this.type = type;
-        this.amount = amount;
-        this.description = description;
-        this.balanceAfter = balanceAfter;
-        this.timestamp = LocalDateTime.now();
+    // Lock held by transfers touching this account; always acquire in account-id order
+    ReentrantLock transferLock() {
+        return transferLock;
+    }
+    
+    // Held from a balance change until its journal row and listener event are done, so a write-ahead
+    // log sees each account's changes in the order they happened. Taken after any transfer locks,
+    // in account-id order; components that call debit() or credit() directly must hold it too.
+    ReentrantLock ledgerLock() {
+        return ledgerLock;
+    }
+    
+    // Set by AccountRegistry when the account is registered
+    void setListener(LedgerListener listener) {
+        this.listener = listener;
+    }
+    
+    // Index of the newest journal row for this account, or TransactionJournal.NO_ROW
+    public long getLastJournalRow() {
+        synchronized (historyLock) {
+            return lastJournalRow;
+        }
     }
     
     @Override
     public String toString() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        return String.format("%s | %s | $%.2f | %s | Balance: $%.2f",
-                timestamp.format(formatter), type, amount, description, balanceAfter);
+        return "Account: " + accountNumber + " | Holder: " + accountHolderName
+                + " | Balance: $" + Money.format(balance);
     }
-    
-    // Getters
-    public String getType() { return type; }
-    public double getAmount() { return amount; }
-    public String getDescription() { return description; }
-    public LocalDateTime getTimestamp() { return timestamp; }
-    public double getBalanceAfter() { return balanceAfter; }
-}
\ No newline at end of file
+}
@@ -0,0 +1,154 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * BankAggregates class - bank-wide totals kept up to date as accounts change, so a dashboard
+ * query costs O(1) instead of a walk over every account. Counters are LongAdders, which stay
+ * correct and cheap under heavy concurrent updates, and every event carries the exact
+ * balance it produced, so the balance histogram moves accounts between buckets precisely.
+ */
+public class BankAggregates implements LedgerListener {
+    private static final int TYPE_COUNT = 5;
+    private static final String[] BUCKET_LABELS = {
+        "under $1", "$1 - $9.99", "$10 - $99.99", "$100 - $999.99", "$1K - $9.99K",
+        "$10K - $99.99K", "$100K - $999.99K", "$1M - $9.99M", "$10M and over"
+    };
+    private static final int BUCKET_COUNT = BUCKET_LABELS.length;
+    
+    private final LongAdder totalBalance = new LongAdder();
+    private final LongAdder accountCount = new LongAdder();
+    private final LongAdder[] transactionCounts = newAdders(TYPE_COUNT);
+    private final LongAdder[] transactionVolumes = newAdders(TYPE_COUNT);
+    private final LongAdder[] balanceHistogram = newAdders(BUCKET_COUNT);
+    
+    // Seed with the registry's current accounts and keep up to date from then on.
+    // Call before other threads start changing accounts, or those changes may be counted twice.
+    public static BankAggregates attach(AccountRegistry registry) {
+        BankAggregates aggregates = new BankAggregates();
+        for (BankAccount account : registry.getAccounts()) {
+            aggregates.addAccount(account.getBalance());
+        }
+        registry.addListener(aggregates);
+        return aggregates;
+    }
+    
+    @Override
+    public void accountOpened(BankAccount account) {
+        long balance = account.getBalance();
+        addAccount(balance);
+        if (balance > 0) {
+            record(TransactionJournal.OPENING_DEPOSIT, balance);
+        }
+    }
+    
+    @Override
+    public void deposited(BankAccount account, long amount, long balanceAfter) {
+        totalBalance.add(amount);
+        record(TransactionJournal.DEPOSIT, amount);
+        moveBucket(balanceAfter - amount, balanceAfter);
+    }
+    
+    @Override
+    public void withdrew(BankAccount account, long amount, long balanceAfter) {
+        totalBalance.add(-amount);
+        record(TransactionJournal.WITHDRAWAL, amount);
+        moveBucket(balanceAfter + amount, balanceAfter);
+    }
+    
+    @Override
+    public void transferred(BankAccount source, BankAccount target, long amount,
+                            long sourceBalanceAfter, long targetBalanceAfter) {
+        record(TransactionJournal.TRANSFER_OUT, amount);
+        record(TransactionJournal.TRANSFER_IN, amount);
+        moveBucket(sourceBalanceAfter + amount, sourceBalanceAfter);
+        moveBucket(targetBalanceAfter - amount, targetBalanceAfter);
+    }
+    
+    // Halves of a cross-registry transfer move money in or out of this registry's total
+    @Override
+    public void transferredOut(BankAccount source, BankAccount target, long amount, long sourceBalanceAfter) {
+        totalBalance.add(-amount);
+        record(TransactionJournal.TRANSFER_OUT, amount);
+        moveBucket(sourceBalanceAfter + amount, sourceBalanceAfter);
+    }
+    
+    @Override
+    public void transferredIn(BankAccount source, BankAccount target, long amount, long targetBalanceAfter) {
+        totalBalance.add(amount);
+        record(TransactionJournal.TRANSFER_IN, amount);
+        moveBucket(targetBalanceAfter - amount, targetBalanceAfter);
+    }
+    
+    // Queries - each is a fixed number of adder reads, independent of the number of accounts
+    public long getTotalBalance() { return totalBalance.sum(); }
+    public long getAccountCount() { return accountCount.sum(); }
+    public long getTransactionCount(byte type) { return transactionCounts[type].sum(); }
+    public long getTransactionVolume(byte type) { return transactionVolumes[type].sum(); }
+    
+    public long[] getBalanceHistogram() {
+        long[] histogram = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            histogram[i] = balanceHistogram[i].sum();
+        }
+        return histogram;
+    }
+    
+    public void displaySummary() {
+        System.out.println("\n--- Bank Summary ---");
+        System.out.println("Total Accounts: " + getAccountCount());
+        System.out.println("Total Bank Balance: $" + Money.format(getTotalBalance()));
+        
+        System.out.println("\nTransactions:");
+        printCounter("Deposits", TransactionJournal.DEPOSIT);
+        printCounter("Withdrawals", TransactionJournal.WITHDRAWAL);
+        printCounter("Transfers", TransactionJournal.TRANSFER_OUT);
+        
+        System.out.println("\nAccounts by Balance:");
+        long[] histogram = getBalanceHistogram();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            System.out.println(BUCKET_LABELS[i] + ": " + histogram[i]);
+        }
+    }
+    
+    private void printCounter(String label, byte type) {
+        System.out.println(label + ": " + getTransactionCount(type) + " ($" + Money.format(getTransactionVolume(type)) + ")");
+    }
+    
+    private void addAccount(long balance) {
+        accountCount.increment();
+        totalBalance.add(balance);
+        balanceHistogram[bucketOf(balance)].increment();
+    }
+    
+    private void record(byte type, long amount) {
+        transactionCounts[type].increment();
+        transactionVolumes[type].add(amount);
+    }
+    
+    private void moveBucket(long balanceBefore, long balanceAfter) {
+        int from = bucketOf(balanceBefore);
+        int to = bucketOf(balanceAfter);
+        if (from != to) {
+            balanceHistogram[from].decrement();
+            balanceHistogram[to].increment();
+        }
+    }
+    
+    // Bucket 0 holds balances under $1; each further bucket covers one more decimal digit of dollars
+    private static int bucketOf(long balanceCents) {
+        int bucket = 0;
+        long threshold = Money.CENTS_PER_DOLLAR;
+        while (bucket < BUCKET_COUNT - 1 && balanceCents >= threshold) {
+            bucket++;
+            threshold *= 10;
+        }
+        return bucket;
+    }
+    
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,97 @@
+/**
+ * BankCommand class - one immutable create, deposit, withdraw or transfer request, so the
+ * bank can be driven by programs instead of the console menu.
+ *
+ * Text form, one command per line (amounts in dollars, names may contain spaces):
+ *   CREATE holder name amount
+ *   DEPOSIT account amount
+ *   WITHDRAW account amount
+ *   TRANSFER source target amount
+ */
+public final class BankCommand {
+    public enum Type { CREATE, DEPOSIT, WITHDRAW, TRANSFER }
+    
+    private final Type type;
+    private final String account;
+    private final String target;
+    private final long amount;
+    
+    private BankCommand(Type type, String account, String target, long amount) {
+        this.type = type;
+        this.account = account;
+        this.target = target;
+        this.amount = amount;
+    }
+    
+    public static BankCommand create(String holderName, long initialDeposit) {
+        return new BankCommand(Type.CREATE, holderName, null, initialDeposit);
+    }
+    
+    public static BankCommand deposit(String accountNumber, long amount) {
+        return new BankCommand(Type.DEPOSIT, accountNumber, null, amount);
+    }
+    
+    public static BankCommand withdraw(String accountNumber, long amount) {
+        return new BankCommand(Type.WITHDRAW, accountNumber, null, amount);
+    }
+    
+    public static BankCommand transfer(String sourceNumber, String targetNumber, long amount) {
+        return new BankCommand(Type.TRANSFER, sourceNumber, targetNumber, amount);
+    }
+    
+    // Parse one line of the text form; throws IllegalArgumentException if it is malformed
+    public static BankCommand parse(String line) {
+        String text = line.trim();
+        int verbEnd = nextSpace(text, 0);
+        String verb = text.substring(0, verbEnd);
+        int amountStart = text.lastIndexOf(' ') + 1;
+        if (amountStart <= verbEnd) {
+            throw new IllegalArgumentException("Missing arguments: " + text);
+        }
+        long amount = Money.parse(text.substring(amountStart));
+        String arguments = text.substring(verbEnd, amountStart).trim();
+        
+        if (verb.equalsIgnoreCase("CREATE")) {
+            if (arguments.isEmpty()) {
+                throw new IllegalArgumentException("Missing holder name: " + text);
+            }
+            return create(arguments, amount);
+        }
+        if (verb.equalsIgnoreCase("DEPOSIT") || verb.equalsIgnoreCase("WITHDRAW")) {
+            if (arguments.isEmpty() || nextSpace(arguments, 0) != arguments.length()) {
+                throw new IllegalArgumentException("Expected one account number: " + text);
+            }
+            return verb.equalsIgnoreCase("DEPOSIT") ? deposit(arguments, amount) : withdraw(arguments, amount);
+        }
+        if (verb.equalsIgnoreCase("TRANSFER")) {
+            int split = nextSpace(arguments, 0);
+            String targetNumber = arguments.substring(Math.min(split, arguments.length())).trim();
+            if (split == arguments.length() || nextSpace(targetNumber, 0) != targetNumber.length()) {
+                throw new IllegalArgumentException("Expected source and target account numbers: " + text);
+            }
+            return transfer(arguments.substring(0, split), targetNumber, amount);
+        }
+        throw new IllegalArgumentException("Unknown command: " + verb);
+    }
+    
+    // Getters
+    public Type getType() { return type; }
+    public String getAccount() { return account; }
+    public String getTarget() { return target; }
+    public long getAmount() { return amount; }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(48);
+        sb.append(type).append(' ').append(account).append(' ');
+        if (target != null) {
+            sb.append(target).append(' ');
+        }
+        return Money.appendTo(sb, amount).toString();
+    }
+    
+    private static int nextSpace(String text, int from) {
+        int space = text.indexOf(' ', from);
+        return space < 0 ? text.length() : space;
+    }
+}
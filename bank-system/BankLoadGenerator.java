@@ -0,0 +1,184 @@
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * BankLoadGenerator - drives a BankServer over localhost with many concurrent clients.
+ * It first opens a pool of accounts, then every client connection sends random deposits,
+ * withdrawals and transfers one at a time until the run ends, timing each round trip.
+ * With --embedded it starts its own in-memory server on a free port, so a single command
+ * exercises the whole stack.
+ *
+ * Usage: java BankLoadGenerator [--port n] [--clients n] [--seconds n] [--accounts n] [--embedded]
+ */
+public class BankLoadGenerator {
+    private static final String OPENING_BALANCE = "1000000.00";
+    
+    private final int port;
+    private final int clients;
+    private final long durationNanos;
+    private final int accountCount;
+    
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    
+    public BankLoadGenerator(int port, int clients, int seconds, int accountCount) {
+        this.port = port;
+        this.clients = clients;
+        this.durationNanos = seconds * 1_000_000_000L;
+        this.accountCount = accountCount;
+    }
+    
+    public void run() throws IOException, InterruptedException {
+        String[] accounts = openAccounts();
+        CountDownLatch done = new CountDownLatch(clients);
+        ExecutorService executor = BankServer.newThreadPerTaskExecutor();
+        long deadline = System.nanoTime() + durationNanos;
+        long start = System.nanoTime();
+        
+        for (int c = 0; c < clients; c++) {
+            executor.execute(() -> {
+                try {
+                    runClient(accounts, deadline);
+                } catch (IOException e) {
+                    System.err.println("Client failed: " + e.getMessage());
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        
+        long requests = completed.sum();
+        System.out.printf("Clients: %d | Requests: %,d | Refused: %,d | Throughput: %,.0f req/s%n",
+                clients, requests, refused.sum(), requests * 1e9 / elapsed);
+        System.out.printf("Round trip (us): mean %.1f | p50 %d | p99 %d | p99.9 %d%n",
+                latency.getMeanNanos() / 1000, latency.percentileNanos(50) / 1000,
+                latency.percentileNanos(99) / 1000, latency.percentileNanos(99.9) / 1000);
+        System.out.println("Server: " + request("STATS"));
+    }
+    
+    // Create the account pool with one pipelined burst; returns the new account numbers
+    private String[] openAccounts() throws IOException {
+        try (Socket socket = connect()) {
+            Writer out = writer(socket);
+            BufferedReader in = reader(socket);
+            for (int i = 0; i < accountCount; i++) {
+                out.write("CREATE Load Client " + i + " " + OPENING_BALANCE + "\n");
+            }
+            out.write("QUIT\n");
+            out.flush();
+            
+            String[] accounts = new String[accountCount];
+            for (int i = 0; i < accountCount; i++) {
+                String[] fields = in.readLine().split(" ");
+                if (!fields[1].equals("OK")) {
+                    throw new IOException("Could not open account: " + String.join(" ", fields));
+                }
+                accounts[i] = fields[2];
+            }
+            return accounts;
+        }
+    }
+    
+    private void runClient(String[] accounts, long deadline) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder command = new StringBuilder(64);
+        try (Socket socket = connect()) {
+            Writer out = writer(socket);
+            BufferedReader in = reader(socket);
+            while (System.nanoTime() < deadline) {
+                command.setLength(0);
+                String account = accounts[random.nextInt(accounts.length)];
+                int kind = random.nextInt(4);
+                if (kind == 0) {
+                    command.append("DEPOSIT ").append(account);
+                } else if (kind == 1) {
+                    command.append("WITHDRAW ").append(account);
+                } else {
+                    String target = accounts[random.nextInt(accounts.length)];
+                    command.append("TRANSFER ").append(account).append(' ').append(target);
+                }
+                command.append(' ').append(1 + random.nextInt(100)).append(".00\n");
+                
+                long start = System.nanoTime();
+                out.append(command);
+                out.flush();
+                String reply = in.readLine();
+                latency.record(System.nanoTime() - start);
+                if (reply == null) {
+                    throw new EOFException("Server closed the connection");
+                }
+                completed.increment();
+                if (reply.contains(" ERR ")) {
+                    refused.increment();
+                }
+            }
+            out.write("QUIT\n");
+            out.flush();
+        }
+    }
+    
+    private String request(String line) throws IOException {
+        try (Socket socket = connect()) {
+            Writer out = writer(socket);
+            out.write(line + "\nQUIT\n");
+            out.flush();
+            return reader(socket).readLine();
+        }
+    }
+    
+    private Socket connect() throws IOException {
+        Socket socket = new Socket("localhost", port);
+        socket.setTcpNoDelay(true);
+        return socket;
+    }
+    
+    private static Writer writer(Socket socket) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+    
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+    
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = BankServer.DEFAULT_PORT;
+        int clients = 200;
+        int seconds = 10;
+        int accounts = 1000;
+        boolean embedded = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--clients": clients = Integer.parseInt(args[++i]); break;
+                case "--seconds": seconds = Integer.parseInt(args[++i]); break;
+                case "--accounts": accounts = Integer.parseInt(args[++i]); break;
+                case "--embedded": embedded = true; break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+            }
+        }
+        
+        BankServer server = null;
+        if (embedded) {
+            server = new BankServer(new AccountRegistry(), null, 0);
+            server.start();
+            port = server.getPort();
+        }
+        try {
+            new BankLoadGenerator(port, clients, seconds, accounts).run();
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+}
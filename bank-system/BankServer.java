@@ -0,0 +1,219 @@
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * BankServer class - a line-based TCP front end serving many clients from one JVM.
+ * Each connection gets its own thread, virtual where the JDK has them (looked up
+ * reflectively, so the class still runs on JDK 17 with platform threads), and speaks the
+ * BankCommand text form: one command per line, one result line per command in the
+ * CommandExecutor format. Clients may pipeline; replies are written once the connection
+ * has no more input ready, after the ledger (if any) has made them durable.
+ * Two extra commands: STATS returns the throughput and latency counters, QUIT closes.
+ *
+ * Usage: java BankServer [--port n] [--data directory]
+ */
+public class BankServer implements Closeable {
+    public static final int DEFAULT_PORT = 7070;
+    private static final int BUFFER_CHARS = 16 * 1024;
+    
+    private final AccountRegistry registry;
+    private final LedgerLog ledgerLog;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final Thread acceptor;
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final long startNanos = System.nanoTime();
+    
+    // Listen on localhost; port 0 picks a free port. ledgerLog may be null.
+    public BankServer(AccountRegistry registry, LedgerLog ledgerLog, int port) throws IOException {
+        this.registry = registry;
+        this.ledgerLog = ledgerLog;
+        this.serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        this.connections = newThreadPerTaskExecutor();
+        this.acceptor = new Thread(this::acceptLoop, "bank-server-acceptor");
+    }
+    
+    public void start() {
+        acceptor.start();
+    }
+    
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+    
+    // One virtual thread per task where available (JDK 21+), otherwise a cached platform-thread pool
+    static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+    
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Error accepting connection: " + e.getMessage());
+                }
+            } catch (RejectedExecutionException e) {
+                return;
+            }
+        }
+    }
+    
+    private void serve(Socket socket) {
+        openConnections.incrementAndGet();
+        sockets.add(socket);
+        CommandExecutor executor = new CommandExecutor(registry);
+        StringBuilder results = new StringBuilder(BUFFER_CHARS);
+        long sequence = 0;
+        
+        try (socket;
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), BUFFER_CHARS);
+             Writer out = new BufferedWriter(
+                     new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), BUFFER_CHARS)) {
+            socket.setTcpNoDelay(true);
+            String line;
+            while ((line = in.readLine()) != null) {
+                String text = line.trim();
+                if (text.isEmpty()) {
+                    continue;
+                }
+                if (text.equalsIgnoreCase("QUIT")) {
+                    break;
+                }
+                if (text.equalsIgnoreCase("STATS")) {
+                    appendStats(results).append('\n');
+                } else {
+                    long start = System.nanoTime();
+                    if (!execute(executor, text, ++sequence, results)) {
+                        failures.increment();
+                    }
+                    requests.increment();
+                    latency.record(System.nanoTime() - start);
+                }
+                if (results.length() >= BUFFER_CHARS || !in.ready()) {
+                    flush(results, out);
+                }
+            }
+            flush(results, out);
+        } catch (IOException e) {
+            // Client went away; nothing to report back to
+        } finally {
+            sockets.remove(socket);
+            openConnections.decrementAndGet();
+        }
+    }
+    
+    // Run one command, turning any exception it throws into an ERR reply so the connection stays usable
+    private static boolean execute(CommandExecutor executor, String text, long sequence, StringBuilder results) {
+        int mark = results.length();
+        try {
+            return executor.executeLine(text, sequence, results);
+        } catch (RuntimeException e) {
+            results.setLength(mark);
+            String reason = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            results.append(sequence).append(" ERR ").append(reason).append('\n');
+            return false;
+        }
+    }
+    
+    private void flush(StringBuilder results, Writer out) throws IOException {
+        if (results.length() == 0) {
+            return;
+        }
+        if (ledgerLog != null) {
+            ledgerLog.sync();
+        }
+        out.append(results);
+        out.flush();
+        results.setLength(0);
+    }
+    
+    // Counters - requests, failures and latency cover commands only, not STATS or QUIT
+    public long getRequests() { return requests.sum(); }
+    public long getFailures() { return failures.sum(); }
+    public int getOpenConnections() { return openConnections.get(); }
+    public LatencyHistogram getLatency() { return latency; }
+    
+    public StringBuilder appendStats(StringBuilder sb) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        long total = getRequests();
+        return sb.append("STATS requests=").append(total)
+                .append(" failures=").append(getFailures())
+                .append(" connections=").append(getOpenConnections())
+                .append(" uptime_s=").append(Math.round(seconds))
+                .append(" throughput_per_s=").append(Math.round(total / Math.max(seconds, 1e-9)))
+                .append(" mean_us=").append(Math.round(latency.getMeanNanos() / 1000))
+                .append(" p50_us=").append(latency.percentileNanos(50) / 1000)
+                .append(" p99_us=").append(latency.percentileNanos(99) / 1000)
+                .append(" p999_us=").append(latency.percentileNanos(99.9) / 1000);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        connections.shutdown();
+        try {
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = DEFAULT_PORT;
+        String dataDirectory = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--port")) {
+                port = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("--data")) {
+                dataDirectory = args[i + 1];
+            }
+        }
+        
+        AccountRegistry registry = new AccountRegistry();
+        LedgerLog ledgerLog = null;
+        if (dataDirectory != null) {
+            ledgerLog = LedgerLog.open(Paths.get(dataDirectory));
+            ledgerLog.restoreInto(registry, TransactionJournal.shared());
+            registry.addListener(ledgerLog);
+        }
+        
+        BankServer server = new BankServer(registry, ledgerLog, port);
+        LedgerLog log = ledgerLog;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+                if (log != null) {
+                    log.checkpoint();
+                    log.close();
+                }
+            } catch (IOException e) {
+                System.err.println("Error shutting down: " + e.getMessage());
+            }
+        }));
+        server.start();
+        System.out.println("Bank server listening on localhost:" + server.getPort());
+        server.acceptor.join();
+    }
+}
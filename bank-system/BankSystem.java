@@ -1,15 +1,55 @@
 import java.util.*;
+import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
  * Bank System - A comprehensive banking application with multiple account management
  */
 public class BankSystem {
-    private ArrayList<BankAccount> accounts;
+    private static final int MAX_LISTED_MATCHES = 20;
+    private static final String DATA_DIRECTORY = "bank-data";
+    
+    private AccountRegistry registry;
+    private LedgerLog ledgerLog;
+    private BankAggregates aggregates;
     private Scanner scanner;
     
     public BankSystem() {
-        accounts = new ArrayList<>();
+        registry = new AccountRegistry();
         scanner = new Scanner(System.in);
+        openLedger();
+        aggregates = BankAggregates.attach(registry);
+    }
+    
+    // Recover accounts from the write-ahead log and start logging new changes
+    private void openLedger() {
+        try {
+            ledgerLog = LedgerLog.open(Paths.get(DATA_DIRECTORY));
+            int restored = ledgerLog.restoreInto(registry, TransactionJournal.shared());
+            registry.addListener(ledgerLog);
+            System.out.println("Recovered " + restored + " accounts from " + DATA_DIRECTORY + ".");
+        } catch (IOException e) {
+            System.out.println("Error opening ledger, changes will not be saved: " + e.getMessage());
+        }
+    }
+    
+    // Wait until every change made so far is on disk
+    private void commitLedger() throws IOException {
+        if (ledgerLog != null) {
+            ledgerLog.sync();
+        }
+    }
+    
+    private void closeLedger() {
+        if (ledgerLog == null) {
+            return;
+        }
+        try {
+            ledgerLog.checkpoint();
+            ledgerLog.close();
+        } catch (IOException e) {
+            System.out.println("Error closing ledger: " + e.getMessage());
+        }
     }
     
     public void start() {
@@ -25,12 +65,15 @@ public class BankSystem {
                     case 2: accountOperations(); break;
                     case 3: transferMoney(); break;
                     case 4: viewAllAccounts(); break;
-                    case 5: 
+                    case 5: aggregates.displaySummary(); break;
+                    case 6: 
+                        closeLedger();
                         System.out.println("Thank you for using Java Bank System!");
                         return;
                     default:
                         System.out.println("Invalid choice. Please try again.");
                 }
+                commitLedger();
             } catch (Exception e) {
                 System.out.println("Error: " + e.getMessage());
                 scanner.nextLine(); // Clear invalid input
@@ -44,8 +87,9 @@ public class BankSystem {
         System.out.println("2. Account Operations");
         System.out.println("3. Transfer Money");
         System.out.println("4. View All Accounts");
-        System.out.println("5. Exit");
-        System.out.print("Enter your choice (1-5): ");
+        System.out.println("5. Bank Summary");
+        System.out.println("6. Exit");
+        System.out.print("Enter your choice (1-6): ");
     }
     
     private int getChoice() {
@@ -59,7 +103,7 @@ public class BankSystem {
         String name = scanner.nextLine();
         
         System.out.print("Enter initial deposit amount: $");
-        double initialDeposit = scanner.nextDouble();
+        long initialDeposit = readAmount();
         
         if (initialDeposit < 0) {
             System.out.println("Initial deposit cannot be negative!");
@@ -67,14 +111,14 @@ public class BankSystem {
         }
         
         BankAccount account = new BankAccount(name, initialDeposit);
-        accounts.add(account);
+        registry.register(account);
         
         System.out.println("\nAccount created successfully!");
         account.displayAccountInfo();
     }
     
-    private void accountOperations() {
-        if (accounts.isEmpty()) {
+    private void accountOperations() throws IOException {
+        if (registry.isEmpty()) {
             System.out.println("No accounts found. Please create an account first.");
             return;
         }
@@ -93,14 +137,16 @@ public class BankSystem {
                     
                 case 2: // Deposit
                     System.out.print("Enter deposit amount: $");
-                    double depositAmount = scanner.nextDouble();
+                    long depositAmount = readAmount();
                     account.deposit(depositAmount);
+                    commitLedger();
                     break;
                     
                 case 3: // Withdraw
                     System.out.print("Enter withdrawal amount: $");
-                    double withdrawAmount = scanner.nextDouble();
+                    long withdrawAmount = readAmount();
                     account.withdraw(withdrawAmount);
+                    commitLedger();
                     break;
                     
                 case 4: // View Transaction History
@@ -124,7 +170,7 @@ public class BankSystem {
         System.out.println("\n--- Account Operations ---");
         System.out.println("Current Account: " + account.getAccountNumber() + 
                           " (" + account.getAccountHolderName() + ")");
-        System.out.printf("Balance: $%.2f%n", account.getBalance());
+        System.out.println("Balance: $" + Money.format(account.getBalance()));
         System.out.println("1. View Account Information");
         System.out.println("2. Deposit Money");
         System.out.println("3. Withdraw Money");
@@ -135,8 +181,8 @@ public class BankSystem {
     }
     
     private void transferMoney() {
-        if (accounts.size() < 2) {
-            System.out.println("Need at least 2 accounts for transfer. Current accounts: " + accounts.size());
+        if (registry.size() < 2) {
+            System.out.println("Need at least 2 accounts for transfer. Current accounts: " + registry.size());
             return;
         }
         
@@ -154,51 +200,84 @@ public class BankSystem {
         }
         
         System.out.print("Enter transfer amount: $");
-        double amount = scanner.nextDouble();
+        long amount = readAmount();
         
         sourceAccount.transfer(destAccount, amount);
     }
     
     private BankAccount selectAccount() {
-        if (accounts.isEmpty()) {
+        if (registry.isEmpty()) {
             System.out.println("No accounts available.");
             return null;
         }
         
+        System.out.print("Enter account number or holder name: ");
+        String query = readLine();
+        
+        BankAccount account = registry.findByNumber(query);
+        if (account != null) {
+            return account;
+        }
+        
+        List<BankAccount> matches = registry.findByHolderPrefix(query);
+        if (matches.isEmpty()) {
+            System.out.println("No account matches: " + query);
+            return null;
+        }
+        if (matches.size() == 1) {
+            return matches.get(0);
+        }
+        if (matches.size() > MAX_LISTED_MATCHES) {
+            System.out.println(matches.size() + " accounts match. Please enter a longer name or the account number.");
+            return null;
+        }
+        
         System.out.println("\n--- Select Account ---");
-        for (int i = 0; i < accounts.size(); i++) {
-            System.out.println((i + 1) + ". " + accounts.get(i));
+        for (int i = 0; i < matches.size(); i++) {
+            System.out.println((i + 1) + ". " + matches.get(i));
         }
         
-        System.out.print("Enter account number (1-" + accounts.size() + "): ");
+        System.out.print("Enter choice (1-" + matches.size() + "): ");
         int choice = scanner.nextInt();
         
-        if (choice < 1 || choice > accounts.size()) {
+        if (choice < 1 || choice > matches.size()) {
             System.out.println("Invalid account selection.");
             return null;
         }
         
-        return accounts.get(choice - 1);
+        return matches.get(choice - 1);
+    }
+    
+    // Read an amount such as 12.50 as exact cents
+    private long readAmount() {
+        return Money.parse(scanner.next());
+    }
+    
+    // Read the next non-empty line, skipping the newline left behind by nextInt()/next()
+    private String readLine() {
+        String line = scanner.nextLine();
+        while (line.trim().isEmpty()) {
+            line = scanner.nextLine();
+        }
+        return line.trim();
     }
     
     private void viewAllAccounts() {
-        if (accounts.isEmpty()) {
+        if (registry.isEmpty()) {
             System.out.println("No accounts found.");
             return;
         }
         
         System.out.println("\n--- All Bank Accounts ---");
-        System.out.println("Total Accounts: " + accounts.size());
+        System.out.println("Total Accounts: " + aggregates.getAccountCount());
         System.out.println("-".repeat(70));
         
-        double totalBalance = 0;
-        for (BankAccount account : accounts) {
+        for (BankAccount account : registry.getAccounts()) {
             System.out.println(account);
-            totalBalance += account.getBalance();
         }
         
         System.out.println("-".repeat(70));
-        System.out.printf("Total Bank Balance: $%.2f%n", totalBalance);
+        System.out.println("Total Bank Balance: $" + Money.format(aggregates.getTotalBalance()));
     }
     
     public static void main(String[] args) {
@@ -0,0 +1,361 @@
+import java.util.*;
+
+/**
+ * BatchTransfer class - settles a file of (source, target, amount) rows as one atomic unit.
+ * Opposing flows between the same pair of accounts are netted first, funds are checked
+ * against each account's net outflow, and the surviving transfers are applied with every
+ * involved account locked in account-id order. Nothing is printed per transfer; settle()
+ * returns a BatchResult summary instead.
+ *
+ * The batch is atomic only with respect to code that takes the accounts' locks: transfers,
+ * other batches, and deposits and withdrawals, which hold the account's ledger lock. Code
+ * that calls debit() or credit() without that lock can see or disturb a batch half-applied.
+ */
+public class BatchTransfer {
+    private static final long EMPTY = -1;
+    
+    private final AccountRegistry registry;
+    private final IdentityHashMap<BankAccount, Integer> accountIndex;
+    private final ArrayList<BankAccount> accounts;
+    
+    // Open-addressing map from (lower index, higher index) pair to the net amount flowing lower -> higher
+    private long[] pairKeys;
+    private long[] pairNets;
+    private int pairCount;
+    
+    private int rowCount;
+    private long grossVolume;
+    private boolean settled;
+    
+    public BatchTransfer(AccountRegistry registry) {
+        this.registry = registry;
+        this.accountIndex = new IdentityHashMap<>();
+        this.accounts = new ArrayList<>();
+        allocatePairs(1024);
+    }
+    
+    // Add a row by account number, e.g. add("ACC1001", "ACC1002", 2500)
+    public void add(String sourceNumber, String targetNumber, long amount) {
+        add(resolve(sourceNumber), resolve(targetNumber), amount);
+    }
+    
+    public void add(BankAccount source, BankAccount target, long amount) {
+        if (settled) {
+            throw new IllegalStateException("Batch has already been settled");
+        }
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Transfer amount must be positive: " + amount);
+        }
+        if (source == target) {
+            throw new IllegalArgumentException("Cannot transfer to the same account: " + source.getAccountNumber());
+        }
+        
+        int sourceIndex = indexOf(source);
+        int targetIndex = indexOf(target);
+        int low = Math.min(sourceIndex, targetIndex);
+        int high = Math.max(sourceIndex, targetIndex);
+        addToPair(((long) low << 32) | high, sourceIndex == low ? amount : -amount);
+        
+        rowCount++;
+        grossVolume = Money.add(grossVolume, amount);
+    }
+    
+    // Apply the netted batch; either every transfer happens or none does
+    public BatchResult settle() {
+        if (settled) {
+            throw new IllegalStateException("Batch has already been settled");
+        }
+        settled = true;
+        
+        // Turn non-zero pairs into directed transfers and per-account net changes
+        int accountCount = accounts.size();
+        long[] netChange = new long[accountCount];
+        int[] from = new int[pairCount];
+        int[] to = new int[pairCount];
+        long[] amounts = new long[pairCount];
+        int transfers = 0;
+        long netVolume = 0;
+        
+        for (int slot = 0; slot < pairKeys.length; slot++) {
+            long net = pairNets[slot];
+            if (pairKeys[slot] == EMPTY || net == 0) {
+                continue;
+            }
+            int low = (int) (pairKeys[slot] >>> 32);
+            int high = (int) pairKeys[slot];
+            from[transfers] = net > 0 ? low : high;
+            to[transfers] = net > 0 ? high : low;
+            amounts[transfers] = Math.abs(net);
+            netChange[from[transfers]] = Money.subtract(netChange[from[transfers]], amounts[transfers]);
+            netChange[to[transfers]] = Money.add(netChange[to[transfers]], amounts[transfers]);
+            netVolume = Money.add(netVolume, amounts[transfers]);
+            transfers++;
+        }
+        
+        if (transfers == 0) {
+            return BatchResult.accepted(rowCount, 0, 0, grossVolume, 0);
+        }
+        
+        BankAccount[] locked = involvedAccounts(from, to, transfers);
+        for (BankAccount account : locked) {
+            account.transferLock().lock();
+        }
+        for (BankAccount account : locked) {
+            account.ledgerLock().lock();
+        }
+        try {
+            return apply(netChange, from, to, amounts, transfers, locked.length, netVolume);
+        } finally {
+            for (int i = locked.length - 1; i >= 0; i--) {
+                locked[i].ledgerLock().unlock();
+            }
+            for (int i = locked.length - 1; i >= 0; i--) {
+                locked[i].transferLock().unlock();
+            }
+        }
+    }
+    
+    // Caller holds every involved account's transfer and ledger locks
+    private BatchResult apply(long[] netChange, int[] from, int[] to, long[] amounts, int transfers,
+                              int accountsTouched, long netVolume) {
+        int accountCount = accounts.size();
+        long[] balanceBefore = new long[accountCount];
+        
+        // Refuse a batch that would push a balance past the long range before anything is changed
+        for (int i = 0; i < accountCount; i++) {
+            if (netChange[i] > 0 && accounts.get(i).getBalance() > Long.MAX_VALUE - netChange[i]) {
+                return BatchResult.overflowed(rowCount, transfers, grossVolume, netVolume,
+                        accounts.get(i).getAccountNumber());
+            }
+        }
+        
+        // Reserve every net outflow first, so a shortfall can still be undone cleanly
+        for (int i = 0; i < accountCount; i++) {
+            if (netChange[i] >= 0) {
+                continue;
+            }
+            BankAccount account = accounts.get(i);
+            long after = account.debit(-netChange[i]);
+            if (after == BankAccount.INSUFFICIENT_FUNDS) {
+                long shortfall = Money.subtract(-netChange[i], account.getBalance());
+                for (int j = 0; j < i; j++) {
+                    if (netChange[j] < 0) {
+                        accounts.get(j).credit(-netChange[j]);
+                    }
+                }
+                return BatchResult.rejected(rowCount, transfers, grossVolume, netVolume,
+                        account.getAccountNumber(), shortfall);
+            }
+            balanceBefore[i] = Money.subtract(after, netChange[i]);
+        }
+        
+        for (int i = 0; i < accountCount; i++) {
+            if (netChange[i] > 0) {
+                try {
+                    balanceBefore[i] = Money.subtract(accounts.get(i).credit(netChange[i]), netChange[i]);
+                } catch (ArithmeticException e) {
+                    // A deposit raced past the check above; undo the credits and reservations made so far
+                    undo(netChange, i);
+                    return BatchResult.overflowed(rowCount, transfers, grossVolume, netVolume,
+                            accounts.get(i).getAccountNumber());
+                }
+            } else if (netChange[i] == 0) {
+                balanceBefore[i] = accounts.get(i).getBalance();
+            }
+        }
+        
+        // Record each netted transfer with balances running from the pre-batch values
+        long[] running = balanceBefore;
+        BankAccount[] sources = new BankAccount[transfers];
+        BankAccount[] targets = new BankAccount[transfers];
+        long[] sourceBalances = new long[transfers];
+        long[] targetBalances = new long[transfers];
+        
+        for (int k = 0; k < transfers; k++) {
+            BankAccount source = accounts.get(from[k]);
+            BankAccount target = accounts.get(to[k]);
+            running[from[k]] = Money.subtract(running[from[k]], amounts[k]);
+            running[to[k]] = Money.add(running[to[k]], amounts[k]);
+            
+            source.addTransaction(TransactionJournal.TRANSFER_OUT, amounts[k], target.getAccountId(), running[from[k]]);
+            target.addTransaction(TransactionJournal.TRANSFER_IN, amounts[k], source.getAccountId(), running[to[k]]);
+            
+            sources[k] = source;
+            targets[k] = target;
+            sourceBalances[k] = running[from[k]];
+            targetBalances[k] = running[to[k]];
+        }
+        
+        registry.listener().transferredBatch(sources, targets, amounts, sourceBalances, targetBalances, transfers);
+        return BatchResult.accepted(rowCount, transfers, accountsTouched, grossVolume, netVolume);
+    }
+    
+    // Reverse the credits to accounts before creditedUpTo and every reserved outflow
+    private void undo(long[] netChange, int creditedUpTo) {
+        for (int j = 0; j < creditedUpTo; j++) {
+            if (netChange[j] > 0 && accounts.get(j).debit(netChange[j]) == BankAccount.INSUFFICIENT_FUNDS) {
+                // Only a caller bypassing the ledger lock can have spent the credit; never create money
+                throw new IllegalStateException("Cannot roll back batch credit to " + accounts.get(j).getAccountNumber()
+                        + ": its balance was spent while the batch held the account locked");
+            }
+        }
+        for (int j = 0; j < netChange.length; j++) {
+            if (netChange[j] < 0) {
+                accounts.get(j).credit(-netChange[j]);
+            }
+        }
+    }
+    
+    // Accounts taking part in at least one netted transfer, in lock order
+    private BankAccount[] involvedAccounts(int[] from, int[] to, int transfers) {
+        boolean[] involved = new boolean[accounts.size()];
+        int count = 0;
+        for (int k = 0; k < transfers; k++) {
+            if (!involved[from[k]]) {
+                involved[from[k]] = true;
+                count++;
+            }
+            if (!involved[to[k]]) {
+                involved[to[k]] = true;
+                count++;
+            }
+        }
+        
+        BankAccount[] result = new BankAccount[count];
+        int next = 0;
+        for (int i = 0; i < involved.length; i++) {
+            if (involved[i]) {
+                result[next++] = accounts.get(i);
+            }
+        }
+        Arrays.sort(result, Comparator.comparingLong(BankAccount::getAccountId));
+        return result;
+    }
+    
+    private BankAccount resolve(String accountNumber) {
+        BankAccount account = registry.findByNumber(accountNumber);
+        if (account == null) {
+            throw new IllegalArgumentException("Unknown account: " + accountNumber);
+        }
+        return account;
+    }
+    
+    private int indexOf(BankAccount account) {
+        Integer index = accountIndex.get(account);
+        if (index == null) {
+            index = accounts.size();
+            accountIndex.put(account, index);
+            accounts.add(account);
+        }
+        return index;
+    }
+    
+    private void addToPair(long key, long signedAmount) {
+        if ((pairCount + 1) * 4L > pairKeys.length * 3L) {
+            long[] oldKeys = pairKeys;
+            long[] oldNets = pairNets;
+            allocatePairs(oldKeys.length * 2);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = findSlot(oldKeys[i]);
+                    pairKeys[slot] = oldKeys[i];
+                    pairNets[slot] = oldNets[i];
+                }
+            }
+        }
+        
+        int slot = findSlot(key);
+        if (pairKeys[slot] == EMPTY) {
+            pairKeys[slot] = key;
+            pairCount++;
+        }
+        pairNets[slot] = Money.add(pairNets[slot], signedAmount);
+    }
+    
+    private int findSlot(long key) {
+        int mask = pairKeys.length - 1;
+        long h = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (pairKeys[slot] != EMPTY && pairKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    private void allocatePairs(int capacity) {
+        pairKeys = new long[capacity];
+        Arrays.fill(pairKeys, EMPTY);
+        pairNets = new long[capacity];
+    }
+}
+
+/**
+ * BatchResult class summarising a settled (or rejected) batch
+ */
+class BatchResult {
+    private boolean accepted;
+    private int rows;
+    private int transfers;
+    private int accountsTouched;
+    private long grossVolume;
+    private long netVolume;
+    private String rejectedAccount;
+    private long shortfall;
+    private boolean overflow;
+    
+    private BatchResult(boolean accepted, int rows, int transfers, int accountsTouched, long grossVolume,
+                        long netVolume, String rejectedAccount, long shortfall, boolean overflow) {
+        this.accepted = accepted;
+        this.rows = rows;
+        this.transfers = transfers;
+        this.accountsTouched = accountsTouched;
+        this.grossVolume = grossVolume;
+        this.netVolume = netVolume;
+        this.rejectedAccount = rejectedAccount;
+        this.shortfall = shortfall;
+        this.overflow = overflow;
+    }
+    
+    static BatchResult accepted(int rows, int transfers, int accountsTouched, long grossVolume, long netVolume) {
+        return new BatchResult(true, rows, transfers, accountsTouched, grossVolume, netVolume, null, 0, false);
+    }
+    
+    static BatchResult rejected(int rows, int transfers, long grossVolume, long netVolume,
+                                String rejectedAccount, long shortfall) {
+        return new BatchResult(false, rows, transfers, 0, grossVolume, netVolume, rejectedAccount, shortfall, false);
+    }
+    
+    // Rejected because a credit would take rejectedAccount's balance past the largest amount a long holds
+    static BatchResult overflowed(int rows, int transfers, long grossVolume, long netVolume, String rejectedAccount) {
+        return new BatchResult(false, rows, transfers, 0, grossVolume, netVolume, rejectedAccount, 0, true);
+    }
+    
+    // Getters
+    public boolean isAccepted() { return accepted; }
+    public int getRows() { return rows; }
+    public int getTransfers() { return transfers; }
+    public int getAccountsTouched() { return accountsTouched; }
+    public long getGrossVolume() { return grossVolume; }
+    public long getNetVolume() { return netVolume; }
+    public String getRejectedAccount() { return rejectedAccount; }
+    public long getShortfall() { return shortfall; }
+    public boolean isOverflow() { return overflow; }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(accepted ? "Batch settled" : "Batch rejected").append(" | Rows: ").append(rows)
+                .append(" | Net transfers: ").append(transfers).append(" | Gross: $");
+        Money.appendTo(sb, grossVolume).append(" | Net: $");
+        Money.appendTo(sb, netVolume);
+        if (accepted) {
+            sb.append(" | Accounts: ").append(accountsTouched);
+        } else if (overflow) {
+            sb.append(" | Balance limit exceeded in ").append(rejectedAccount);
+        } else {
+            sb.append(" | Insufficient funds in ").append(rejectedAccount).append(" (short $");
+            Money.appendTo(sb, shortfall).append(')');
+        }
+        return sb.toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,85 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BlockIdAllocator class - each thread leases a block of ids up front and hands them out
+ * from its own lease, so opening accounts touches shared state only once per block.
+ *
+ * The id space is cut into blocks of blockSize ids, and blocks are striped over nodeCount
+ * nodes: node n owns global blocks n, n + nodeCount, n + 2 * nodeCount, ... Processes or
+ * shards configured with different node numbers therefore never issue the same id, without
+ * talking to each other, and the owning node of any id can be computed from the id alone.
+ * Ids left in a lease when a thread ends are never issued.
+ */
+public class BlockIdAllocator implements AccountIdAllocator {
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+    
+    private final long firstId;
+    private final int blockSize;
+    private final int node;
+    private final int nodeCount;
+    private final AtomicLong nextBlock = new AtomicLong();
+    private final AtomicLong reserved = new AtomicLong(Long.MIN_VALUE);
+    
+    // Per-thread lease: {next id, end of block (exclusive)}
+    private final ThreadLocal<long[]> leases = ThreadLocal.withInitial(() -> new long[2]);
+    
+    public BlockIdAllocator(long firstId) {
+        this(firstId, DEFAULT_BLOCK_SIZE, 0, 1);
+    }
+    
+    public BlockIdAllocator(long firstId, int blockSize, int node, int nodeCount) {
+        if (firstId <= 0 || blockSize <= 0 || nodeCount <= 0 || node < 0 || node >= nodeCount) {
+            throw new IllegalArgumentException("Invalid id block layout: first=" + firstId + " block="
+                    + blockSize + " node=" + node + "/" + nodeCount);
+        }
+        this.firstId = firstId;
+        this.blockSize = blockSize;
+        this.node = node;
+        this.nodeCount = nodeCount;
+    }
+    
+    @Override
+    public long nextId() {
+        long[] lease = leases.get();
+        if (lease[0] >= lease[1] || lease[0] <= reserved.get()) {
+            lease(lease);
+        }
+        return lease[0]++;
+    }
+    
+    @Override
+    public void reserveThrough(long accountId) {
+        reserved.accumulateAndGet(accountId, Math::max);
+    }
+    
+    // Node that owns an id under this layout, or -1 if the id is below firstId
+    public int nodeOf(long accountId) {
+        if (accountId < firstId) {
+            return -1;
+        }
+        return (int) (((accountId - firstId) / blockSize) % nodeCount);
+    }
+    
+    private void lease(long[] lease) {
+        while (true) {
+            long floor = reserved.get();
+            long start;
+            try {
+                long globalBlock = Math.addExact(Math.multiplyExact(nextBlock.getAndIncrement(), nodeCount), node);
+                start = Math.addExact(firstId, Math.multiplyExact(globalBlock, blockSize));
+                Math.addExact(start, blockSize);
+            } catch (ArithmeticException e) {
+                throw new IllegalStateException("Account ids exhausted");
+            }
+            
+            if (start + blockSize - 1 > floor) {
+                lease[0] = Math.max(start, floor + 1);
+                lease[1] = start + blockSize;
+                return;
+            }
+            // Skip straight past the blocks a reservation already covers
+            long coveredBlock = (floor - firstId) / blockSize;
+            nextBlock.accumulateAndGet(Math.max(0, (coveredBlock - node) / nodeCount), Math::max);
+        }
+    }
+}
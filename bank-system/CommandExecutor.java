@@ -0,0 +1,190 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * CommandExecutor class - runs streams of BankCommands against a registry without touching
+ * the console. Results are collected in a buffer and written out in bulk, one line per
+ * command, whenever the buffer fills or the input has nothing more ready, so a producer
+ * piping commands in still sees its results promptly. With a ledger attached, a batch of
+ * results is only written after the ledger has made those changes durable, which costs
+ * one sync per batch rather than one per command.
+ *
+ * Result lines: "<sequence> OK <account> <balance after>" or "<sequence> ERR <reason>", where
+ * run() uses the command's line number in the input as its sequence.
+ * Blank lines and lines starting with '#' are skipped.
+ *
+ * Usage: java CommandExecutor [--data directory] [commands-file]
+ */
+public class CommandExecutor {
+    private static final int FLUSH_CHARS = 64 * 1024;
+    
+    private final AccountRegistry registry;
+    private final LedgerLog ledgerLog;
+    private long executed;
+    private long failed;
+    
+    public CommandExecutor(AccountRegistry registry) {
+        this(registry, null);
+    }
+    
+    // ledgerLog may be null, in which case nothing waits for durability
+    public CommandExecutor(AccountRegistry registry, LedgerLog ledgerLog) {
+        this.registry = registry;
+        this.ledgerLog = ledgerLog;
+    }
+    
+    // Run every command in the input, writing result lines to out; returns the number of commands run
+    public long run(BufferedReader in, Writer out) throws IOException {
+        StringBuilder results = new StringBuilder(FLUSH_CHARS + 256);
+        long lineNumber = 0;
+        long commands = 0;
+        String line;
+        
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            String text = line.trim();
+            if (!text.isEmpty() && text.charAt(0) != '#') {
+                commands++;
+                executeLine(text, lineNumber, results);
+            }
+            if (results.length() >= FLUSH_CHARS || (results.length() > 0 && !in.ready())) {
+                flush(results, out);
+            }
+        }
+        flush(results, out);
+        return commands;
+    }
+    
+    // Parse and execute one line of the text form, reporting a malformed line as a failed command
+    public boolean executeLine(String line, long sequence, StringBuilder results) {
+        BankCommand command;
+        try {
+            command = BankCommand.parse(line);
+        } catch (IllegalArgumentException e) {
+            executed++;
+            failed++;
+            results.append(sequence).append(" ERR ").append(e.getMessage()).append('\n');
+            return false;
+        }
+        return execute(command, sequence, results);
+    }
+    
+    // Execute one command and append its result line; returns true if it succeeded
+    public boolean execute(BankCommand command, long sequence, StringBuilder results) {
+        executed++;
+        String error;
+        try {
+            error = apply(command, sequence, results);
+        } catch (ArithmeticException e) {
+            error = e.getMessage();
+        }
+        if (error != null) {
+            failed++;
+            results.append(sequence).append(" ERR ").append(error).append('\n');
+            return false;
+        }
+        return true;
+    }
+    
+    public long getExecuted() { return executed; }
+    public long getFailed() { return failed; }
+    
+    // Returns null after appending an OK line, or the reason the command was refused
+    private String apply(BankCommand command, long sequence, StringBuilder results) {
+        long amount = command.getAmount();
+        if (command.getType() == BankCommand.Type.CREATE) {
+            if (amount < 0) {
+                return "Initial deposit cannot be negative";
+            }
+            BankAccount account = new BankAccount(command.getAccount(), amount);
+            registry.register(account);
+            appendOk(results, sequence, account, account.getBalance());
+            return null;
+        }
+        
+        BankAccount account = registry.findByNumber(command.getAccount());
+        if (account == null) {
+            return "Unknown account: " + command.getAccount();
+        }
+        if (amount <= 0) {
+            return "Amount must be positive";
+        }
+        
+        long balance;
+        switch (command.getType()) {
+            case DEPOSIT:
+                balance = account.applyDeposit(amount);
+                break;
+            case WITHDRAW:
+                balance = account.applyWithdrawal(amount);
+                break;
+            default:
+                BankAccount target = registry.findByNumber(command.getTarget());
+                if (target == null) {
+                    return "Unknown account: " + command.getTarget();
+                }
+                if (target == account) {
+                    return "Cannot transfer to the same account";
+                }
+                balance = account.applyTransfer(target, amount);
+        }
+        if (balance == BankAccount.INSUFFICIENT_FUNDS) {
+            return "Insufficient funds in " + account.getAccountNumber();
+        }
+        appendOk(results, sequence, account, balance);
+        return null;
+    }
+    
+    private static void appendOk(StringBuilder results, long sequence, BankAccount account, long balance) {
+        results.append(sequence).append(" OK ").append(account.getAccountNumber()).append(' ');
+        Money.appendTo(results, balance).append('\n');
+    }
+    
+    // Make the batch durable before anyone can see its results
+    private void flush(StringBuilder results, Writer out) throws IOException {
+        if (ledgerLog != null) {
+            ledgerLog.sync();
+        }
+        out.append(results);
+        out.flush();
+        results.setLength(0);
+    }
+    
+    public static void main(String[] args) throws IOException {
+        Path dataDirectory = null;
+        Path input = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--data") && i + 1 < args.length) {
+                dataDirectory = Paths.get(args[++i]);
+            } else {
+                input = Paths.get(args[i]);
+            }
+        }
+        
+        AccountRegistry registry = new AccountRegistry();
+        LedgerLog ledgerLog = null;
+        if (dataDirectory != null) {
+            ledgerLog = LedgerLog.open(dataDirectory);
+            ledgerLog.restoreInto(registry, TransactionJournal.shared());
+            registry.addListener(ledgerLog);
+        }
+        
+        CommandExecutor executor = new CommandExecutor(registry, ledgerLog);
+        long start = System.nanoTime();
+        try (BufferedReader in = input == null
+                     ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), FLUSH_CHARS)
+                     : Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), FLUSH_CHARS)) {
+            long commands = executor.run(in, out);
+            long elapsed = System.nanoTime() - start;
+            System.err.printf("%d commands, %d failed, %.1f ms (%,.0f commands/s)%n", commands, executor.getFailed(),
+                    elapsed / 1e6, commands * 1e9 / Math.max(1, elapsed));
+        } finally {
+            if (ledgerLog != null) {
+                ledgerLog.checkpoint();
+                ledgerLog.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ConservationStressTest - a runnable check that concurrent transfers neither create nor
+ * destroy money. Worker threads make random transfers between a small set of accounts,
+ * so the same pairs are hit from both directions at once, with amounts large enough that
+ * some transfers are refused for insufficient funds. Afterwards the total balance must
+ * equal the opening total, no balance may be negative, and every account's transfer
+ * history must add up to its balance.
+ *
+ * Exits with status 1 if any check fails, so it can be run from a script.
+ *
+ * Usage: java ConservationStressTest [threads] [transfers-per-thread] [accounts]
+ */
+public class ConservationStressTest {
+    private static final long OPENING_BALANCE = 1_000_00L;
+    private static final long MAX_AMOUNT = 500_00L;
+    
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(4, Runtime.getRuntime().availableProcessors());
+        int transfers = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int accountCount = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        
+        TransactionJournal journal = new TransactionJournal();
+        BankAccount[] accounts = new BankAccount[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accounts[i] = new BankAccount("Stress " + i, OPENING_BALANCE, journal);
+        }
+        long expected = total(accounts);
+        
+        PrintStream console = System.out;
+        AtomicLong succeeded = new AtomicLong();
+        CountDownLatch go = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        long start = System.nanoTime();
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (int t = 0; t < threads; t++) {
+                workers[t] = new Thread(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long local = 0;
+                    try {
+                        go.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < transfers; i++) {
+                        int from = random.nextInt(accountCount);
+                        int to = random.nextInt(accountCount - 1);
+                        if (to >= from) {
+                            to++;
+                        }
+                        if (accounts[from].transfer(accounts[to], 1 + random.nextLong(MAX_AMOUNT))) {
+                            local++;
+                        }
+                    }
+                    succeeded.addAndGet(local);
+                });
+                workers[t].start();
+            }
+            go.countDown();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } finally {
+            System.setOut(console);
+        }
+        long nanos = System.nanoTime() - start;
+        
+        boolean passed = true;
+        long actual = total(accounts);
+        if (actual != expected) {
+            console.println("FAIL: total balance is " + Money.format(actual) + ", expected " + Money.format(expected));
+            passed = false;
+        }
+        for (BankAccount account : accounts) {
+            if (account.getBalance() < 0) {
+                console.println("FAIL: " + account.getAccountNumber() + " has a negative balance of "
+                        + Money.format(account.getBalance()));
+                passed = false;
+            }
+            long replayed = replayHistory(journal, account);
+            if (replayed != account.getBalance()) {
+                console.println("FAIL: " + account.getAccountNumber() + " history adds up to " + Money.format(replayed)
+                        + " but the balance is " + Money.format(account.getBalance()));
+                passed = false;
+            }
+        }
+        
+        console.printf("%,d threads x %,d transfers over %d accounts: %,d succeeded in %.2f s%n", threads, transfers,
+                accountCount, succeeded.get(), nanos / 1e9);
+        if (!passed) {
+            System.exit(1);
+        }
+        console.println("PASS: total balance " + Money.format(actual) + " conserved");
+    }
+    
+    private static long total(BankAccount[] accounts) {
+        long total = 0;
+        for (BankAccount account : accounts) {
+            total = Money.add(total, account.getBalance());
+        }
+        return total;
+    }
+    
+    // Sum the account's journal rows from the opening deposit on
+    private static long replayHistory(TransactionJournal journal, BankAccount account) {
+        long balance = 0;
+        for (long row = account.getLastJournalRow(); row != TransactionJournal.NO_ROW; row = journal.getPreviousRow(row)) {
+            byte type = journal.getType(row);
+            long amount = journal.getAmount(row);
+            balance += type == TransactionJournal.WITHDRAWAL || type == TransactionJournal.TRANSFER_OUT ? -amount : amount;
+        }
+        return balance;
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * LedgerListener interface notified after every balance change on a registered account.
+ * Balances passed in are the exact values produced by the operation, so listeners can
+ * maintain derived state without re-reading accounts that other threads keep changing.
+ */
+public interface LedgerListener {
+    LedgerListener NONE = new LedgerListener() { };
+    
+    default void accountOpened(BankAccount account) { }
+    
+    default void deposited(BankAccount account, long amount, long balanceAfter) { }
+    
+    default void withdrew(BankAccount account, long amount, long balanceAfter) { }
+    
+    default void transferred(BankAccount source, BankAccount target, long amount,
+                             long sourceBalanceAfter, long targetBalanceAfter) { }
+    
+    // One side of a transfer whose accounts live in different registries, e.g. ShardedBank shards.
+    // Each registry hears only about its own account, so every ledger sees its own balance change.
+    default void transferredOut(BankAccount source, BankAccount target, long amount, long sourceBalanceAfter) { }
+    
+    default void transferredIn(BankAccount source, BankAccount target, long amount, long targetBalanceAfter) { }
+    
+    // A batch of transfers applied atomically; listeners that persist changes should keep it whole
+    default void transferredBatch(BankAccount[] sources, BankAccount[] targets, long[] amounts,
+                                  long[] sourceBalancesAfter, long[] targetBalancesAfter, int count) {
+        for (int i = 0; i < count; i++) {
+            transferred(sources[i], targets[i], amounts[i], sourceBalancesAfter[i], targetBalancesAfter[i]);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,611 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32C;
+
+/**
+ * LedgerLog class - a durable binary write-ahead log of every account change.
+ * Records are appended to an in-memory buffer and a background thread writes and fsyncs
+ * everything pending in one go, so threads waiting for durability share one force() (group
+ * commit). A checkpoint seals the current log segment and folds it into a compact balance
+ * snapshot, so startup only replays the segments written after the latest snapshot.
+ *
+ * Records reach the log in the order balances changed: accounts call their listeners while
+ * still holding their ledger lock, so a recovered log never has a withdrawal without the
+ * deposit that funded it.
+ *
+ * Record layout: int payload length, int CRC32C of the payload, then the payload
+ * (byte operation code followed by the operation's fields).
+ */
+public class LedgerLog implements LedgerListener, Closeable {
+    private static final byte OP_OPEN = 1;
+    private static final byte OP_DEPOSIT = 2;
+    private static final byte OP_WITHDRAWAL = 3;
+    private static final byte OP_TRANSFER = 4;
+    private static final byte OP_TRANSFER_BATCH = 5;
+    private static final byte OP_TRANSFER_OUT = 6;
+    private static final byte OP_TRANSFER_IN = 7;
+    
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int SNAPSHOT_MAGIC = 0x424E4B53; // "BNKS"
+    private static final String SEGMENT_PREFIX = "ledger-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    
+    public static final long DEFAULT_SNAPSHOT_INTERVAL_MILLIS = 60_000;
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 64L * 1024 * 1024;
+    
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final CRC32C crc = new CRC32C();
+    private final Object ioLock = new Object();
+    private final Object checkpointLock = new Object();
+    private final Thread flusher;
+    private final ScheduledExecutorService checkpointer;
+    
+    // Guarded by this
+    private ByteBuffer pending;
+    private ByteBuffer writing;
+    private int recordStart;
+    private long appendedLsn;
+    private long durableLsn;
+    private IOException failure;
+    private boolean closed;
+    
+    // Guarded by ioLock
+    private FileChannel channel;
+    private long currentSegment;
+    
+    private LedgerState recovered;
+    
+    private LedgerLog(Path directory, long snapshotIntervalMillis, long maxSegmentBytes) throws IOException {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.pending = ByteBuffer.allocate(64 * 1024);
+        this.writing = ByteBuffer.allocate(64 * 1024);
+        
+        Files.createDirectories(directory);
+        recovered = loadLatestSnapshot();
+        long lastSegment = recovered.lastSegment;
+        for (long segment : listSegments()) {
+            if (segment > recovered.lastSegment) {
+                replaySegment(segment, recovered);
+            }
+            lastSegment = Math.max(lastSegment, segment);
+        }
+        
+        // Never append to a recovered segment; its tail may be torn
+        currentSegment = lastSegment + 1;
+        channel = openSegment(currentSegment);
+        
+        flusher = new Thread(this::flushLoop, "ledger-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        
+        checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ledger-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointer.scheduleWithFixedDelay(this::checkpointQuietly,
+                snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    // Open (or create) the ledger in a directory and recover its state
+    public static LedgerLog open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SNAPSHOT_INTERVAL_MILLIS, DEFAULT_MAX_SEGMENT_BYTES);
+    }
+    
+    public static LedgerLog open(Path directory, long snapshotIntervalMillis, long maxSegmentBytes) throws IOException {
+        return new LedgerLog(directory, snapshotIntervalMillis, maxSegmentBytes);
+    }
+    
+    // Recreate the recovered accounts in a registry; returns how many were restored
+    public synchronized int restoreInto(AccountRegistry registry, TransactionJournal journal) {
+        if (recovered == null) {
+            return 0;
+        }
+        LedgerState state = recovered;
+        recovered = null;
+        
+        int restored = 0;
+        for (int i = 0; i < state.ids.length; i++) {
+            if (state.ids[i] != LedgerState.EMPTY) {
+                BankAccount account = new BankAccount(state.ids[i], state.names[i], state.balances[i], journal);
+                if (registry.restore(account)) {
+                    restored++;
+                }
+            }
+        }
+        return restored;
+    }
+    
+    // LedgerListener - each callback appends one record and returns without waiting for disk
+    @Override
+    public void accountOpened(BankAccount account) {
+        byte[] name = account.getAccountHolderName().getBytes(StandardCharsets.UTF_8);
+        synchronized (this) {
+            ByteBuffer buffer = beginRecord(1 + 8 + 8 + 4 + name.length);
+            buffer.put(OP_OPEN).putLong(account.getAccountId()).putLong(account.getBalance())
+                    .putInt(name.length).put(name);
+            endRecord();
+        }
+    }
+    
+    @Override
+    public synchronized void deposited(BankAccount account, long amount, long balanceAfter) {
+        beginRecord(1 + 8 + 8).put(OP_DEPOSIT).putLong(account.getAccountId()).putLong(amount);
+        endRecord();
+    }
+    
+    @Override
+    public synchronized void withdrew(BankAccount account, long amount, long balanceAfter) {
+        beginRecord(1 + 8 + 8).put(OP_WITHDRAWAL).putLong(account.getAccountId()).putLong(amount);
+        endRecord();
+    }
+    
+    @Override
+    public synchronized void transferred(BankAccount source, BankAccount target, long amount,
+                                         long sourceBalanceAfter, long targetBalanceAfter) {
+        beginRecord(1 + 8 + 8 + 8).put(OP_TRANSFER).putLong(source.getAccountId())
+                .putLong(target.getAccountId()).putLong(amount);
+        endRecord();
+    }
+    
+    // Each half of a cross-registry transfer changes only the one account this ledger owns
+    @Override
+    public synchronized void transferredOut(BankAccount source, BankAccount target, long amount,
+                                            long sourceBalanceAfter) {
+        beginRecord(1 + 8 + 8 + 8).put(OP_TRANSFER_OUT).putLong(source.getAccountId())
+                .putLong(target.getAccountId()).putLong(amount);
+        endRecord();
+    }
+    
+    @Override
+    public synchronized void transferredIn(BankAccount source, BankAccount target, long amount,
+                                           long targetBalanceAfter) {
+        beginRecord(1 + 8 + 8 + 8).put(OP_TRANSFER_IN).putLong(source.getAccountId())
+                .putLong(target.getAccountId()).putLong(amount);
+        endRecord();
+    }
+    
+    // The whole batch goes into one record so replay applies all of it or none of it
+    @Override
+    public synchronized void transferredBatch(BankAccount[] sources, BankAccount[] targets, long[] amounts,
+                                              long[] sourceBalancesAfter, long[] targetBalancesAfter, int count) {
+        ByteBuffer buffer = beginRecord(1 + 4 + count * 24);
+        buffer.put(OP_TRANSFER_BATCH).putInt(count);
+        for (int i = 0; i < count; i++) {
+            buffer.putLong(sources[i].getAccountId()).putLong(targets[i].getAccountId()).putLong(amounts[i]);
+        }
+        endRecord();
+    }
+    
+    // Sequence number of the newest appended record
+    public synchronized long lastAppendedLsn() {
+        return appendedLsn;
+    }
+    
+    // Block until every record up to lsn has been written and forced to disk
+    public synchronized void awaitDurable(long lsn) throws IOException {
+        while (durableLsn < lsn) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (closed) {
+                throw new IOException("Ledger is closed");
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the ledger");
+            }
+        }
+    }
+    
+    // Wait until everything appended so far is durable
+    public void sync() throws IOException {
+        awaitDurable(lastAppendedLsn());
+    }
+    
+    // Seal the current segment and fold all sealed segments into a new snapshot
+    public void checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            sync();
+            long sealed;
+            synchronized (ioLock) {
+                if (channel.size() == 0) {
+                    return; // Nothing written since the last checkpoint
+                }
+                sealed = currentSegment;
+                channel.force(true);
+                channel.close();
+                currentSegment++;
+                channel = openSegment(currentSegment);
+            }
+            
+            LedgerState state = loadLatestSnapshot();
+            long previousSnapshot = state.lastSegment;
+            for (long segment : listSegments()) {
+                if (segment > previousSnapshot && segment <= sealed) {
+                    replaySegment(segment, state);
+                }
+            }
+            state.lastSegment = sealed;
+            writeSnapshot(state);
+            
+            // The new snapshot covers everything up to the sealed segment
+            if (previousSnapshot >= 0) {
+                Files.deleteIfExists(snapshotPath(previousSnapshot));
+            }
+            for (long segment : listSegments()) {
+                if (segment <= sealed) {
+                    Files.deleteIfExists(segmentPath(segment));
+                }
+            }
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        sync();
+        checkpointer.shutdown();
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (ioLock) {
+            channel.force(true);
+            channel.close();
+        }
+    }
+    
+    // Record framing - caller holds this. Once the flusher has failed nothing more can become
+    // durable, so appends fail too rather than piling up in memory
+    private ByteBuffer beginRecord(int payloadBytes) {
+        if (failure != null) {
+            throw new UncheckedIOException("Ledger can no longer be written", failure);
+        }
+        int needed = RECORD_HEADER_BYTES + payloadBytes;
+        if (pending.remaining() < needed) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + needed));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+        recordStart = pending.position();
+        return pending.putInt(payloadBytes).putInt(0);
+    }
+    
+    // Fill in the CRC of the record started by beginRecord() and wake the flusher
+    private void endRecord() {
+        int payloadStart = recordStart + RECORD_HEADER_BYTES;
+        crc.reset();
+        crc.update(pending.array(), payloadStart, pending.position() - payloadStart);
+        pending.putInt(recordStart + 4, (int) crc.getValue());
+        appendedLsn++;
+        notifyAll();
+    }
+    
+    // Background thread: write and force whatever accumulated while the previous force ran
+    private void flushLoop() {
+        while (true) {
+            long batchLsn;
+            synchronized (this) {
+                while (pending.position() == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.position() == 0 && closed) {
+                    return;
+                }
+                ByteBuffer swap = writing;
+                writing = pending;
+                pending = swap;
+                batchLsn = appendedLsn;
+            }
+            
+            try {
+                boolean segmentFull;
+                synchronized (ioLock) {
+                    writing.flip();
+                    while (writing.hasRemaining()) {
+                        channel.write(writing);
+                    }
+                    channel.force(false);
+                    segmentFull = channel.size() >= maxSegmentBytes;
+                }
+                writing.clear();
+                synchronized (this) {
+                    durableLsn = batchLsn;
+                    notifyAll();
+                }
+                if (segmentFull) {
+                    checkpointer.execute(this::checkpointQuietly);
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+        }
+    }
+    
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            System.err.println("Ledger checkpoint failed: " + e.getMessage());
+        }
+    }
+    
+    // Apply every intact record of a segment; stops at the first torn or corrupt record
+    private void replaySegment(long segment, LedgerState state) throws IOException {
+        try (FileChannel in = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+            ByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            CRC32C check = new CRC32C();
+            while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+                int length = buffer.getInt();
+                int expectedCrc = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    return;
+                }
+                ByteBuffer payload = buffer.slice();
+                payload.limit(length);
+                check.reset();
+                check.update(payload.duplicate());
+                if ((int) check.getValue() != expectedCrc) {
+                    return;
+                }
+                buffer.position(buffer.position() + length);
+                applyRecord(payload, state);
+            }
+        }
+    }
+    
+    private static void applyRecord(ByteBuffer payload, LedgerState state) {
+        byte op = payload.get();
+        switch (op) {
+            case OP_OPEN: {
+                long id = payload.getLong();
+                long balance = payload.getLong();
+                byte[] name = new byte[payload.getInt()];
+                payload.get(name);
+                state.open(id, new String(name, StandardCharsets.UTF_8), balance);
+                break;
+            }
+            case OP_DEPOSIT:
+                state.adjust(payload.getLong(), payload.getLong());
+                break;
+            case OP_WITHDRAWAL:
+                state.adjust(payload.getLong(), -payload.getLong());
+                break;
+            case OP_TRANSFER: {
+                long source = payload.getLong();
+                long target = payload.getLong();
+                long amount = payload.getLong();
+                state.adjust(source, -amount);
+                state.adjust(target, amount);
+                break;
+            }
+            case OP_TRANSFER_OUT: {
+                long source = payload.getLong();
+                payload.getLong(); // Target, kept by the other side's ledger
+                state.adjust(source, -payload.getLong());
+                break;
+            }
+            case OP_TRANSFER_IN: {
+                payload.getLong(); // Source, kept by the other side's ledger
+                long target = payload.getLong();
+                state.adjust(target, payload.getLong());
+                break;
+            }
+            case OP_TRANSFER_BATCH: {
+                int count = payload.getInt();
+                for (int i = 0; i < count; i++) {
+                    long source = payload.getLong();
+                    long target = payload.getLong();
+                    long amount = payload.getLong();
+                    state.adjust(source, -amount);
+                    state.adjust(target, amount);
+                }
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown ledger operation: " + op);
+        }
+    }
+    
+    // Snapshot layout: magic, last folded segment, account count, then (id, balance, name) entries
+    private void writeSnapshot(LedgerState state) throws IOException {
+        Path target = snapshotPath(state.lastSegment);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(256 * 1024);
+            buffer.putInt(SNAPSHOT_MAGIC).putLong(state.lastSegment).putInt(state.size);
+            for (int i = 0; i < state.ids.length; i++) {
+                if (state.ids[i] == LedgerState.EMPTY) {
+                    continue;
+                }
+                byte[] name = state.names[i].getBytes(StandardCharsets.UTF_8);
+                if (buffer.remaining() < 20 + name.length) {
+                    drain(out, buffer);
+                    if (buffer.capacity() < 20 + name.length) {
+                        buffer = ByteBuffer.allocate(20 + name.length);
+                    }
+                }
+                buffer.putLong(state.ids[i]).putLong(state.balances[i]).putInt(name.length).put(name);
+            }
+            drain(out, buffer);
+            out.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+    
+    private LedgerState loadLatestSnapshot() throws IOException {
+        long latest = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (Path file : files) {
+                latest = Math.max(latest, parseNumber(file, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX));
+            }
+        }
+        
+        LedgerState state = new LedgerState();
+        if (latest < 0) {
+            return state;
+        }
+        
+        try (FileChannel in = FileChannel.open(snapshotPath(latest), StandardOpenOption.READ)) {
+            ByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            if (buffer.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a ledger snapshot: " + snapshotPath(latest));
+            }
+            state.lastSegment = buffer.getLong();
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                long id = buffer.getLong();
+                long balance = buffer.getLong();
+                byte[] name = new byte[buffer.getInt()];
+                buffer.get(name);
+                state.open(id, new String(name, StandardCharsets.UTF_8), balance);
+            }
+        }
+        return state;
+    }
+    
+    private long[] listSegments() throws IOException {
+        ArrayList<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                segments.add(parseNumber(file, SEGMENT_PREFIX, SEGMENT_SUFFIX));
+            }
+        }
+        long[] sorted = new long[segments.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = segments.get(i);
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+    
+    private FileChannel openSegment(long segment) throws IOException {
+        return FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+    
+    private Path segmentPath(long segment) {
+        return directory.resolve(SEGMENT_PREFIX + String.format("%016d", segment) + SEGMENT_SUFFIX);
+    }
+    
+    private Path snapshotPath(long segment) {
+        return directory.resolve(SNAPSHOT_PREFIX + String.format("%016d", segment) + SNAPSHOT_SUFFIX);
+    }
+    
+    private static long parseNumber(Path file, String prefix, String suffix) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+    
+    /**
+     * Account id -> (holder name, balance) table built while folding the log; open addressing
+     * over primitive arrays keeps multi-million-account recovery free of boxing
+     */
+    private static final class LedgerState {
+        static final long EMPTY = Long.MIN_VALUE;
+        
+        long lastSegment = -1;
+        long[] ids;
+        long[] balances;
+        String[] names;
+        int size;
+        
+        LedgerState() {
+            allocate(1024);
+        }
+        
+        // Opening balances add to any deltas already seen, so record order within a segment does not matter
+        void open(long id, String name, long balance) {
+            int slot = slotFor(id);
+            names[slot] = name;
+            balances[slot] += balance;
+        }
+        
+        void adjust(long id, long delta) {
+            int slot = slotFor(id);
+            balances[slot] += delta;
+        }
+        
+        private int slotFor(long id) {
+            if ((size + 1) * 4L > ids.length * 3L) {
+                rehash();
+            }
+            int mask = ids.length - 1;
+            int slot = mix(id) & mask;
+            while (ids[slot] != EMPTY && ids[slot] != id) {
+                slot = (slot + 1) & mask;
+            }
+            if (ids[slot] == EMPTY) {
+                ids[slot] = id;
+                names[slot] = "";
+                size++;
+            }
+            return slot;
+        }
+        
+        private void rehash() {
+            long[] oldIds = ids;
+            long[] oldBalances = balances;
+            String[] oldNames = names;
+            allocate(oldIds.length * 2);
+            int mask = ids.length - 1;
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] != EMPTY) {
+                    int slot = mix(oldIds[i]) & mask;
+                    while (ids[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    ids[slot] = oldIds[i];
+                    balances[slot] = oldBalances[i];
+                    names[slot] = oldNames[i];
+                }
+            }
+        }
+        
+        private void allocate(int capacity) {
+            ids = new long[capacity];
+            Arrays.fill(ids, EMPTY);
+            balances = new long[capacity];
+            names = new String[capacity];
+        }
+        
+        private static int mix(long id) {
+            long h = id * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,118 @@
+/**
+ * Money utility class for amounts held as a primitive long number of cents.
+ * Arithmetic is exact and allocation-free; formatting avoids String.format.
+ */
+public final class Money {
+    public static final long ZERO = 0L;
+    public static final long CENTS_PER_DOLLAR = 100L;
+    private static final long MAX_DOLLARS = Long.MAX_VALUE / CENTS_PER_DOLLAR;
+    
+    private Money() {
+    }
+    
+    // Arithmetic - throws ArithmeticException instead of silently wrapping around
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+    
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+    
+    public static int compare(long a, long b) {
+        return Long.compare(a, b);
+    }
+    
+    // Convert a dollar amount to cents, rounding half away from zero
+    public static long fromDollars(double dollars) {
+        if (Double.isNaN(dollars) || Double.isInfinite(dollars)
+                || Math.abs(dollars) >= Long.MAX_VALUE / (double) CENTS_PER_DOLLAR) {
+            throw new ArithmeticException("Amount out of range: " + dollars);
+        }
+        return Math.round(dollars * CENTS_PER_DOLLAR);
+    }
+    
+    // Parse text such as "125", "$19.99" or "-0.5" exactly, without going through double.
+    // Throws NumberFormatException if the text is not an amount or does not fit in a long of cents.
+    public static long parse(String text) {
+        String value = text.trim();
+        int i = 0;
+        int length = value.length();
+        boolean negative = false;
+        
+        if (i < length && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            negative = value.charAt(i) == '-';
+            i++;
+        }
+        if (i < length && value.charAt(i) == '$') {
+            i++;
+        }
+        
+        long dollars = 0;
+        int digits = 0;
+        while (i < length && value.charAt(i) != '.') {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid amount: " + text);
+            }
+            dollars = dollars * 10 + digit;
+            if (dollars > MAX_DOLLARS) {
+                throw new NumberFormatException("Amount out of range: " + text);
+            }
+            digits++;
+            i++;
+        }
+        
+        long cents = 0;
+        if (i < length) {
+            i++; // Skip decimal point
+            int fractionDigits = length - i;
+            if (fractionDigits > 2) {
+                throw new NumberFormatException("Amount has more than 2 decimal places: " + text);
+            }
+            for (int j = 0; j < 2; j++) {
+                cents *= 10;
+                if (j < fractionDigits) {
+                    int digit = value.charAt(i + j) - '0';
+                    if (digit < 0 || digit > 9) {
+                        throw new NumberFormatException("Invalid amount: " + text);
+                    }
+                    cents += digit;
+                    digits++;
+                }
+            }
+        }
+        
+        if (digits == 0) {
+            throw new NumberFormatException("Invalid amount: " + text);
+        }
+        
+        long total = dollars * CENTS_PER_DOLLAR + cents;
+        if (total < 0) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+        return negative ? -total : total;
+    }
+    
+    // Format as dollars with two decimals, e.g. 123456 -> "1234.56"
+    public static String format(long cents) {
+        return appendTo(new StringBuilder(24), cents).toString();
+    }
+    
+    // Append the formatted amount to an existing builder so bulk output allocates nothing per value
+    public static StringBuilder appendTo(StringBuilder sb, long cents) {
+        if (cents < 0) {
+            sb.append('-');
+        }
+        // Work on the negative magnitude so Long.MIN_VALUE does not overflow
+        long negative = cents < 0 ? cents : -cents;
+        long fraction = -(negative % CENTS_PER_DOLLAR);
+        long whole = negative / CENTS_PER_DOLLAR;
+        
+        sb.append(-whole).append('.');
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,255 @@
+import java.io.Closeable;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ShardedBank class - accounts hash-partitioned by account id over N in-process shards.
+ * Each shard has its own registry, journal and single-threaded executor, and every
+ * operation on a shard's accounts runs on that executor, so shards share no locks and
+ * scale with the number of cores. Operations are asynchronous and complete their future
+ * with the resulting balance, or INSUFFICIENT_FUNDS; unknown accounts complete exceptionally.
+ *
+ * Transfers inside one shard run as a single local task. A transfer between shards is a
+ * two-phase exchange: the target shard first confirms the target exists, then the source
+ * shard prepares by debiting the amount (the hold, journaled as the transfer out), then
+ * the target shard commits by crediting it. If the commit cannot be applied, the source
+ * shard aborts by crediting the hold back. Money between prepare and commit is reported
+ * by getInFlight(). Each phase tells only its own shard's listeners about its own account,
+ * through transferredOut and transferredIn, on that shard's executor.
+ */
+public class ShardedBank implements Closeable {
+    private final Shard[] shards;
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder crossShardTransfers = new LongAdder();
+    
+    private static final class Shard {
+        final AccountRegistry registry = new AccountRegistry();
+        final TransactionJournal journal = new TransactionJournal();
+        final ExecutorService executor;
+        
+        Shard(int index) {
+            executor = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "bank-shard-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+    
+    public ShardedBank(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+    }
+    
+    public int getShardCount() {
+        return shards.length;
+    }
+    
+    // Shard owning an account id; ids are mixed first so sequential ids spread evenly
+    public int shardOf(long accountId) {
+        long h = accountId * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(h ^ (h >>> 32), (long) shards.length);
+    }
+    
+    // Attach a listener (e.g. BankAggregates) to one shard's registry
+    public void addListener(int shard, LedgerListener listener) {
+        shards[shard].registry.addListener(listener);
+    }
+    
+    public CompletableFuture<BankAccount> openAccount(String holderName, long initialDeposit) {
+        if (initialDeposit < 0) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Initial deposit cannot be negative"));
+        }
+        long accountId = BankAccount.nextAccountId();
+        Shard shard = shards[shardOf(accountId)];
+        return CompletableFuture.supplyAsync(() -> {
+            BankAccount account = BankAccount.open(accountId, holderName, initialDeposit, shard.journal);
+            shard.registry.register(account);
+            return account;
+        }, shard.executor);
+    }
+    
+    public CompletableFuture<Long> deposit(String accountNumber, long amount) {
+        if (amount <= 0) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Deposit amount must be positive"));
+        }
+        return onAccount(accountNumber, account -> account.applyDeposit(amount));
+    }
+    
+    public CompletableFuture<Long> withdraw(String accountNumber, long amount) {
+        if (amount <= 0) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Withdrawal amount must be positive"));
+        }
+        return onAccount(accountNumber, account -> account.applyWithdrawal(amount));
+    }
+    
+    public CompletableFuture<Long> balance(String accountNumber) {
+        return onAccount(accountNumber, BankAccount::getBalance);
+    }
+    
+    // Completes with the source balance after the transfer, or INSUFFICIENT_FUNDS
+    public CompletableFuture<Long> transfer(String sourceNumber, String targetNumber, long amount) {
+        long sourceId = BankAccount.parseAccountNumber(sourceNumber);
+        long targetId = BankAccount.parseAccountNumber(targetNumber);
+        if (sourceId < 0 || targetId < 0) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    "Unknown account: " + (sourceId < 0 ? sourceNumber : targetNumber)));
+        }
+        if (amount <= 0) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Transfer amount must be positive"));
+        }
+        if (sourceId == targetId) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Cannot transfer to the same account"));
+        }
+        
+        Shard source = shards[shardOf(sourceId)];
+        Shard target = shards[shardOf(targetId)];
+        if (source == target) {
+            return CompletableFuture.supplyAsync(() -> {
+                BankAccount from = lookup(source, sourceNumber);
+                return from.applyTransfer(lookup(source, targetNumber), amount);
+            }, source.executor);
+        }
+        
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        target.executor.execute(() -> vote(source, target, sourceNumber, targetNumber, amount, result));
+        return result;
+    }
+    
+    // Phase 0, on the target shard: the target must exist before anything is held
+    private void vote(Shard source, Shard target, String sourceNumber, String targetNumber, long amount,
+                      CompletableFuture<Long> result) {
+        BankAccount to = target.registry.findByNumber(targetNumber);
+        if (to == null) {
+            result.completeExceptionally(new IllegalArgumentException("Unknown account: " + targetNumber));
+            return;
+        }
+        source.executor.execute(() -> prepare(source, target, sourceNumber, to, amount, result));
+    }
+    
+    // Phase 1, on the source shard: hold the funds by debiting them
+    private void prepare(Shard source, Shard target, String sourceNumber, BankAccount to, long amount,
+                         CompletableFuture<Long> result) {
+        BankAccount from = source.registry.findByNumber(sourceNumber);
+        if (from == null) {
+            result.completeExceptionally(new IllegalArgumentException("Unknown account: " + sourceNumber));
+            return;
+        }
+        long sourceBalance;
+        from.ledgerLock().lock();
+        try {
+            sourceBalance = from.debit(amount);
+            if (sourceBalance == BankAccount.INSUFFICIENT_FUNDS) {
+                result.complete(BankAccount.INSUFFICIENT_FUNDS);
+                return;
+            }
+            from.addTransaction(TransactionJournal.TRANSFER_OUT, amount, to.getAccountId(), sourceBalance);
+            source.registry.listener().transferredOut(from, to, amount, sourceBalance);
+        } finally {
+            from.ledgerLock().unlock();
+        }
+        inFlight.add(amount);
+        target.executor.execute(() -> commit(source, target, from, to, amount, sourceBalance, result));
+    }
+    
+    // Phase 2, on the target shard: credit the target, or send the hold back if that fails
+    private void commit(Shard source, Shard target, BankAccount from, BankAccount to, long amount,
+                        long sourceBalance, CompletableFuture<Long> result) {
+        to.ledgerLock().lock();
+        try {
+            long targetBalance;
+            try {
+                targetBalance = to.credit(amount);
+            } catch (ArithmeticException e) {
+                source.executor.execute(() -> abort(source, from, to, amount, e, result));
+                return;
+            }
+            to.addTransaction(TransactionJournal.TRANSFER_IN, amount, from.getAccountId(), targetBalance);
+            target.registry.listener().transferredIn(from, to, amount, targetBalance);
+        } finally {
+            to.ledgerLock().unlock();
+        }
+        inFlight.add(-amount);
+        crossShardTransfers.increment();
+        result.complete(sourceBalance);
+    }
+    
+    // On the source shard: return the hold, journaled as the transfer coming back
+    private void abort(Shard source, BankAccount from, BankAccount to, long amount, Exception cause,
+                       CompletableFuture<Long> result) {
+        from.ledgerLock().lock();
+        try {
+            long restored = from.credit(amount);
+            from.addTransaction(TransactionJournal.TRANSFER_IN, amount, to.getAccountId(), restored);
+            source.registry.listener().transferredIn(to, from, amount, restored);
+        } finally {
+            from.ledgerLock().unlock();
+        }
+        inFlight.add(-amount);
+        result.completeExceptionally(cause);
+    }
+    
+    public BankAccount findAccount(String accountNumber) {
+        long accountId = BankAccount.parseAccountNumber(accountNumber);
+        return accountId < 0 ? null : shards[shardOf(accountId)].registry.findByNumber(accountNumber);
+    }
+    
+    public long getAccountCount() {
+        long count = 0;
+        for (Shard shard : shards) {
+            count += shard.registry.size();
+        }
+        return count;
+    }
+    
+    // Sum of every balance plus money held between prepare and commit; not a point-in-time snapshot
+    public long getTotalBalance() {
+        long total = inFlight.sum();
+        for (Shard shard : shards) {
+            for (BankAccount account : shard.registry.getAccounts()) {
+                total = Money.add(total, account.getBalance());
+            }
+        }
+        return total;
+    }
+    
+    public long getInFlight() { return inFlight.sum(); }
+    public long getCrossShardTransfers() { return crossShardTransfers.sum(); }
+    
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            shard.executor.shutdown();
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.executor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    private interface AccountOperation {
+        long apply(BankAccount account);
+    }
+    
+    private CompletableFuture<Long> onAccount(String accountNumber, AccountOperation operation) {
+        Shard shard = shards[shardOf(BankAccount.parseAccountNumber(accountNumber))];
+        return CompletableFuture.supplyAsync(() -> operation.apply(lookup(shard, accountNumber)), shard.executor);
+    }
+    
+    private static BankAccount lookup(Shard shard, String accountNumber) {
+        BankAccount account = shard.registry.findByNumber(accountNumber);
+        if (account == null) {
+            throw new IllegalArgumentException("Unknown account: " + accountNumber);
+        }
+        return account;
+    }
+}
@@ -0,0 +1,107 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ShardedBankBenchmark - transfer throughput of a ShardedBank as the shard count grows.
+ * Client threads keep a fixed number of random transfers outstanding for each measured
+ * iteration; with N shards about (N - 1) / N of them cross shards and take the two-phase
+ * path. After each shard count the bank's total balance is checked against the money
+ * that was deposited, so a lost or doubled transfer shows up as a failure.
+ *
+ * Usage: java ShardedBankBenchmark [max-shards]
+ */
+public class ShardedBankBenchmark {
+    private static final int ACCOUNTS = 10_000;
+    private static final long OPENING_BALANCE = 1_000_000_00L;
+    private static final int OUTSTANDING_PER_CLIENT = 256;
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 1_000_000_000L;
+    
+    public static void main(String[] args) throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int maxShards = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(8, cores);
+        int clients = Math.max(4, cores);
+        
+        System.out.printf("%8s %8s %16s %14s %10s%n", "Shards", "Clients", "transfers/s", "cross-shard", "balanced");
+        for (int shards = 1; shards <= maxShards; shards *= 2) {
+            try (ShardedBank bank = new ShardedBank(shards)) {
+                String[] accounts = openAccounts(bank);
+                for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                    runIteration(bank, accounts, clients, new long[1]);
+                }
+                double total = 0;
+                long crossBefore = bank.getCrossShardTransfers();
+                long transfers = 0;
+                for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                    long[] completed = new long[1];
+                    total += runIteration(bank, accounts, clients, completed);
+                    transfers += completed[0];
+                }
+                double crossShare = 100.0 * (bank.getCrossShardTransfers() - crossBefore) / Math.max(1, transfers);
+                boolean balanced = bank.getInFlight() == 0 && bank.getTotalBalance() == ACCOUNTS * OPENING_BALANCE;
+                System.out.printf("%8d %8d %,16.0f %13.1f%% %10s%n", shards, clients, total / MEASURED_ITERATIONS,
+                        crossShare, balanced ? "yes" : "NO");
+            }
+        }
+    }
+    
+    private static String[] openAccounts(ShardedBank bank) {
+        List<CompletableFuture<BankAccount>> opened = new ArrayList<>(ACCOUNTS);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            opened.add(bank.openAccount("Benchmark " + i, OPENING_BALANCE));
+        }
+        String[] accounts = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = opened.get(i).join().getAccountNumber();
+        }
+        return accounts;
+    }
+    
+    // Returns completed transfers per second; every transfer started has finished on return
+    private static double runIteration(ShardedBank bank, String[] accounts, int clients, long[] completedOut)
+            throws InterruptedException {
+        long[] counts = new long[clients];
+        Thread[] workers = new Thread[clients];
+        CountDownLatch go = new CountDownLatch(1);
+        
+        for (int c = 0; c < clients; c++) {
+            final int index = c;
+            workers[c] = new Thread(() -> {
+                Semaphore window = new Semaphore(OUTSTANDING_PER_CLIENT);
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                LongAdder done = new LongAdder();
+                try {
+                    go.await();
+                    long deadline = System.nanoTime() + ITERATION_NANOS;
+                    while (System.nanoTime() < deadline) {
+                        window.acquire();
+                        int from = random.nextInt(accounts.length);
+                        int to = (from + 1 + random.nextInt(accounts.length - 1)) % accounts.length;
+                        bank.transfer(accounts[from], accounts[to], 1 + random.nextInt(10_000))
+                                .whenComplete((balance, error) -> {
+                                    done.increment();
+                                    window.release();
+                                });
+                    }
+                    window.acquire(OUTSTANDING_PER_CLIENT);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                counts[index] = done.sum();
+            });
+            workers[c].start();
+        }
+        
+        long start = System.nanoTime();
+        go.countDown();
+        long total = 0;
+        for (int c = 0; c < clients; c++) {
+            workers[c].join();
+            total += counts[c];
+        }
+        completedOut[0] = total;
+        return total * 1e9 / (System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,258 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * TransactionArchive class - a binary export format for account histories that is read
+ * back through memory-mapped buffers. Rows are fixed-width and sorted by account and time,
+ * and an index at the end of the file gives each account's row range, so scans by account
+ * and time window are two binary searches followed by a sequential read of mapped memory.
+ *
+ * File layout:
+ *   header  - int magic, int version, long row count, long account count, long index offset
+ *   rows    - long account id, long timestamp (epoch nanos), long amount, long balance after,
+ *             long counterparty id, byte type, 7 bytes padding (48 bytes per row)
+ *   index   - long account id, long first row, long row count (24 bytes per account)
+ */
+public class TransactionArchive implements Closeable {
+    private static final int MAGIC = 0x424E4B48; // "BNKH"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int ROW_BYTES = 48;
+    private static final int INDEX_ENTRY_BYTES = 24;
+    private static final long ROWS_PER_CHUNK = (1L << 30) / ROW_BYTES;
+    
+    private static final int ACCOUNT_OFFSET = 0;
+    private static final int TIMESTAMP_OFFSET = 8;
+    private static final int AMOUNT_OFFSET = 16;
+    private static final int BALANCE_OFFSET = 24;
+    private static final int COUNTERPARTY_OFFSET = 32;
+    private static final int TYPE_OFFSET = 40;
+    
+    /**
+     * Receives archived rows as primitives, so scans never build objects
+     */
+    public interface RowVisitor {
+        void visit(long accountId, byte type, long amount, long balanceAfter, long counterpartyId, long timestampNanos);
+    }
+    
+    private final FileChannel channel;
+    private final MappedByteBuffer[] rowChunks;
+    private final MappedByteBuffer index;
+    private final long rowCount;
+    private final int accountCount;
+    
+    private TransactionArchive(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            channel.close();
+            throw new IOException("Not a transaction archive: " + file);
+        }
+        rowCount = header.getLong();
+        accountCount = (int) header.getLong();
+        long indexOffset = header.getLong();
+        
+        // Map rows in chunks below 2 GB so archives of any size can be addressed
+        int chunks = (int) ((rowCount + ROWS_PER_CHUNK - 1) / ROWS_PER_CHUNK);
+        rowChunks = new MappedByteBuffer[chunks];
+        for (int i = 0; i < chunks; i++) {
+            long firstRow = i * ROWS_PER_CHUNK;
+            long rows = Math.min(ROWS_PER_CHUNK, rowCount - firstRow);
+            rowChunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + firstRow * ROW_BYTES,
+                    rows * ROW_BYTES);
+        }
+        index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, (long) accountCount * INDEX_ENTRY_BYTES);
+    }
+    
+    public static TransactionArchive open(Path file) throws IOException {
+        return new TransactionArchive(file);
+    }
+    
+    // Write the full history of every account to a new archive; returns the number of rows written
+    public static long export(Path file, Collection<BankAccount> accounts) throws IOException {
+        BankAccount[] sorted = accounts.toArray(new BankAccount[0]);
+        Arrays.sort(sorted, Comparator.comparingLong(BankAccount::getAccountId));
+        
+        long[] firstRows = new long[sorted.length];
+        long[] rowCounts = new long[sorted.length];
+        long written = 0;
+        
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(ROW_BYTES * 4096);
+            out.position(HEADER_BYTES);
+            
+            for (int a = 0; a < sorted.length; a++) {
+                BankAccount account = sorted[a];
+                TransactionJournal journal = account.getJournal();
+                long[] rows = account.latestRows(Integer.MAX_VALUE);
+                firstRows[a] = written;
+                rowCounts[a] = rows.length;
+                
+                for (long row : rows) {
+                    if (buffer.remaining() < ROW_BYTES) {
+                        drain(out, buffer);
+                    }
+                    buffer.putLong(account.getAccountId())
+                            .putLong(journal.getTimestampNanos(row))
+                            .putLong(journal.getAmount(row))
+                            .putLong(journal.getBalanceAfter(row))
+                            .putLong(journal.getCounterpartyId(row))
+                            .put(journal.getType(row))
+                            .put((byte) 0).putShort((short) 0).putInt(0); // Padding
+                }
+                written += rows.length;
+            }
+            drain(out, buffer);
+            
+            long indexOffset = HEADER_BYTES + written * ROW_BYTES;
+            for (int a = 0; a < sorted.length; a++) {
+                if (buffer.remaining() < INDEX_ENTRY_BYTES) {
+                    drain(out, buffer);
+                }
+                buffer.putLong(sorted[a].getAccountId()).putLong(firstRows[a]).putLong(rowCounts[a]);
+            }
+            drain(out, buffer);
+            
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(written).putLong(sorted.length).putLong(indexOffset);
+            buffer.flip();
+            out.position(0);
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        return written;
+    }
+    
+    // Merge the archived history of every account present in the registry into its chain by timestamp,
+    // skipping rows it already has; returns rows imported
+    public long importInto(AccountRegistry registry) {
+        long imported = 0;
+        for (int a = 0; a < accountCount; a++) {
+            long accountId = index.getLong(a * INDEX_ENTRY_BYTES);
+            BankAccount account = registry.findByNumber(BankAccount.formatAccountNumber(accountId));
+            if (account == null) {
+                continue;
+            }
+            long first = index.getLong(a * INDEX_ENTRY_BYTES + 8);
+            int count = (int) index.getLong(a * INDEX_ENTRY_BYTES + 16);
+            byte[] types = new byte[count];
+            long[] amounts = new long[count];
+            long[] counterpartyIds = new long[count];
+            long[] balancesAfter = new long[count];
+            long[] timestamps = new long[count];
+            for (int i = 0; i < count; i++) {
+                ByteBuffer chunk = chunk(first + i);
+                int offset = offset(first + i);
+                types[i] = chunk.get(offset + TYPE_OFFSET);
+                amounts[i] = chunk.getLong(offset + AMOUNT_OFFSET);
+                counterpartyIds[i] = chunk.getLong(offset + COUNTERPARTY_OFFSET);
+                balancesAfter[i] = chunk.getLong(offset + BALANCE_OFFSET);
+                timestamps[i] = chunk.getLong(offset + TIMESTAMP_OFFSET);
+            }
+            imported += account.importHistory(types, amounts, counterpartyIds, balancesAfter, timestamps, count);
+        }
+        return imported;
+    }
+    
+    // Visit one account's rows with fromNanos <= timestamp < toNanos; returns how many were visited
+    public long scan(long accountId, long fromNanos, long toNanos, RowVisitor visitor) {
+        int entry = findAccount(accountId);
+        if (entry < 0) {
+            return 0;
+        }
+        return scanEntry(entry, fromNanos, toNanos, visitor);
+    }
+    
+    // Visit every account's rows inside the time window, in account order
+    public long scan(long fromNanos, long toNanos, RowVisitor visitor) {
+        long visited = 0;
+        for (int entry = 0; entry < accountCount; entry++) {
+            visited += scanEntry(entry, fromNanos, toNanos, visitor);
+        }
+        return visited;
+    }
+    
+    public long getRowCount() { return rowCount; }
+    public int getAccountCount() { return accountCount; }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    private long scanEntry(int entry, long fromNanos, long toNanos, RowVisitor visitor) {
+        long first = index.getLong(entry * INDEX_ENTRY_BYTES + 8);
+        long end = first + index.getLong(entry * INDEX_ENTRY_BYTES + 16);
+        
+        // Rows of one account are in time order, so binary search for the window start
+        long low = first;
+        long high = end;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (timestamp(mid) < fromNanos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        
+        long visited = 0;
+        for (long row = low; row < end; row++) {
+            ByteBuffer chunk = chunk(row);
+            int offset = offset(row);
+            long timestamp = chunk.getLong(offset + TIMESTAMP_OFFSET);
+            if (timestamp >= toNanos) {
+                break;
+            }
+            visitor.visit(chunk.getLong(offset + ACCOUNT_OFFSET), chunk.get(offset + TYPE_OFFSET),
+                    chunk.getLong(offset + AMOUNT_OFFSET), chunk.getLong(offset + BALANCE_OFFSET),
+                    chunk.getLong(offset + COUNTERPARTY_OFFSET), timestamp);
+            visited++;
+        }
+        return visited;
+    }
+    
+    // Binary search of the account index; returns the entry or -1
+    private int findAccount(long accountId) {
+        int low = 0;
+        int high = accountCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long id = index.getLong(mid * INDEX_ENTRY_BYTES);
+            if (id < accountId) {
+                low = mid + 1;
+            } else if (id > accountId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+    
+    private long timestamp(long row) {
+        return chunk(row).getLong(offset(row) + TIMESTAMP_OFFSET);
+    }
+    
+    private ByteBuffer chunk(long row) {
+        return rowChunks[(int) (row / ROWS_PER_CHUNK)];
+    }
+    
+    private static int offset(long row) {
+        return (int) (row % ROWS_PER_CHUNK) * ROW_BYTES;
+    }
+    
+    private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,161 @@
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * TransactionJournal class - a shared, append-only transaction log stored in primitive columns.
+ * Rows live in fixed-size segments so existing rows never move when the journal grows, and
+ * each row links to the previous row of the same account, so every account owns an offset
+ * chain through the journal instead of a list of Transaction objects.
+ */
+public class TransactionJournal {
+    // Transaction type codes
+    public static final byte DEPOSIT = 0;
+    public static final byte WITHDRAWAL = 1;
+    public static final byte TRANSFER_OUT = 2;
+    public static final byte TRANSFER_IN = 3;
+    public static final byte OPENING_DEPOSIT = 4;
+    
+    public static final long NO_ROW = -1;
+    public static final long NO_ACCOUNT = -1;
+    
+    private static final String[] TYPE_NAMES = {"DEPOSIT", "WITHDRAWAL", "TRANSFER_OUT", "TRANSFER_IN", "DEPOSIT"};
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int SEGMENT_BITS = 16;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    
+    // Wall-clock anchor so timestamps have nanosecond resolution without allocating an Instant
+    private static final long CLOCK_BASE_EPOCH_NANOS = System.currentTimeMillis() * 1_000_000L;
+    private static final long CLOCK_BASE_NANO_TIME = System.nanoTime();
+    
+    private static final TransactionJournal SHARED = new TransactionJournal();
+    
+    private volatile Segment[] segments;
+    private long size;
+    
+    public TransactionJournal() {
+        segments = new Segment[] { new Segment() };
+        size = 0;
+    }
+    
+    // Journal used by accounts that are not given one explicitly
+    public static TransactionJournal shared() {
+        return SHARED;
+    }
+    
+    // Append a row and return its index; previousRow is the account's last row or NO_ROW
+    public long append(long accountId, byte type, long counterpartyId, long amount,
+                       long balanceAfter, long previousRow) {
+        return append(accountId, type, counterpartyId, amount, balanceAfter, currentEpochNanos(), previousRow);
+    }
+    
+    // Append a row with an explicit timestamp, e.g. when importing history
+    public synchronized long append(long accountId, byte type, long counterpartyId, long amount,
+                                    long balanceAfter, long timestampNanos, long previousRow) {
+        long row = size;
+        int segmentIndex = (int) (row >>> SEGMENT_BITS);
+        Segment[] current = segments;
+        if (segmentIndex == current.length) {
+            Segment[] grown = new Segment[current.length + 1];
+            System.arraycopy(current, 0, grown, 0, current.length);
+            grown[segmentIndex] = new Segment();
+            segments = grown;
+            current = grown;
+        }
+        
+        Segment segment = current[segmentIndex];
+        int slot = (int) (row & SEGMENT_MASK);
+        segment.types[slot] = type;
+        segment.accountIds[slot] = accountId;
+        segment.counterpartyIds[slot] = counterpartyId;
+        segment.amounts[slot] = amount;
+        segment.balancesAfter[slot] = balanceAfter;
+        segment.timestamps[slot] = timestampNanos;
+        segment.previousRows[slot] = previousRow;
+        size = row + 1;
+        return row;
+    }
+    
+    // Relink a row into its account's chain, e.g. to put imported history in front of it.
+    // Callers hold the account's history lock, as they do when walking the chain.
+    synchronized void setPreviousRow(long row, long previousRow) {
+        segment(row).previousRows[slot(row)] = previousRow;
+    }
+    
+    public synchronized long size() {
+        return size;
+    }
+    
+    // Column accessors - row must come from append() or an account's chain
+    public byte getType(long row) { return segment(row).types[slot(row)]; }
+    public long getAccountId(long row) { return segment(row).accountIds[slot(row)]; }
+    public long getCounterpartyId(long row) { return segment(row).counterpartyIds[slot(row)]; }
+    public long getAmount(long row) { return segment(row).amounts[slot(row)]; }
+    public long getBalanceAfter(long row) { return segment(row).balancesAfter[slot(row)]; }
+    public long getTimestampNanos(long row) { return segment(row).timestamps[slot(row)]; }
+    public long getPreviousRow(long row) { return segment(row).previousRows[slot(row)]; }
+    
+    // Display name of a type code, e.g. "TRANSFER_OUT"
+    public static String typeName(byte type) {
+        return TYPE_NAMES[type];
+    }
+    
+    // Format a row as "timestamp | type | $amount | description | Balance: $balance"
+    public StringBuilder appendRow(StringBuilder sb, long row) {
+        Segment segment = segment(row);
+        int slot = slot(row);
+        byte type = segment.types[slot];
+        long timestamp = segment.timestamps[slot];
+        
+        FORMATTER.formatTo(toLocalDateTime(timestamp), sb);
+        sb.append(" | ").append(TYPE_NAMES[type]).append(" | $");
+        Money.appendTo(sb, segment.amounts[slot]).append(" | ");
+        appendDescription(sb, type, segment.counterpartyIds[slot]);
+        sb.append(" | Balance: $");
+        return Money.appendTo(sb, segment.balancesAfter[slot]);
+    }
+    
+    public static long currentEpochNanos() {
+        return CLOCK_BASE_EPOCH_NANOS + (System.nanoTime() - CLOCK_BASE_NANO_TIME);
+    }
+    
+    public static LocalDateTime toLocalDateTime(long epochNanos) {
+        long seconds = Math.floorDiv(epochNanos, 1_000_000_000L);
+        long nanos = Math.floorMod(epochNanos, 1_000_000_000L);
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(seconds, nanos), ZoneId.systemDefault());
+    }
+    
+    private static void appendDescription(StringBuilder sb, byte type, long counterpartyId) {
+        switch (type) {
+            case DEPOSIT: sb.append("Cash deposit"); break;
+            case WITHDRAWAL: sb.append("Cash withdrawal"); break;
+            case OPENING_DEPOSIT: sb.append("Initial deposit"); break;
+            case TRANSFER_OUT: sb.append("Transfer to ").append(BankAccount.formatAccountNumber(counterpartyId)); break;
+            case TRANSFER_IN: sb.append("Transfer from ").append(BankAccount.formatAccountNumber(counterpartyId)); break;
+            default: sb.append("Unknown");
+        }
+    }
+    
+    private Segment segment(long row) {
+        return segments[(int) (row >>> SEGMENT_BITS)];
+    }
+    
+    private static int slot(long row) {
+        return (int) (row & SEGMENT_MASK);
+    }
+    
+    /**
+     * One block of SEGMENT_SIZE rows, one primitive array per column
+     */
+    private static final class Segment {
+        final byte[] types = new byte[SEGMENT_SIZE];
+        final long[] accountIds = new long[SEGMENT_SIZE];
+        final long[] counterpartyIds = new long[SEGMENT_SIZE];
+        final long[] amounts = new long[SEGMENT_SIZE];
+        final long[] balancesAfter = new long[SEGMENT_SIZE];
+        final long[] timestamps = new long[SEGMENT_SIZE];
+        final long[] previousRows = new long[SEGMENT_SIZE];
+    }
+}
\ No newline at end of file
@@ -0,0 +1,82 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * VelocityTracker class - sliding-window transaction counts and sums for one account,
+ * per transaction type, for checks such as "withdrawals in the last 60 seconds".
+ * The window is a ring of fixed-width time buckets with running totals; a bucket's
+ * figures are subtracted from the totals as it falls out of the window, so a full-window
+ * query is O(1) and memory stays fixed however long the account's history grows.
+ * The window covers the current bucket plus the bucketCount - 1 before it, so its effective
+ * length varies by up to one bucket width.
+ */
+public class VelocityTracker {
+    private static final int TYPE_COUNT = 5;
+    
+    private final long bucketNanos;
+    private final int bucketCount;
+    private final long[] counts;
+    private final long[] sums;
+    private final long[] windowCounts = new long[TYPE_COUNT];
+    private final long[] windowSums = new long[TYPE_COUNT];
+    private long currentBucket = Long.MIN_VALUE;
+    
+    public VelocityTracker(long window, TimeUnit unit, int bucketCount) {
+        long windowNanos = unit.toNanos(window);
+        if (bucketCount <= 0 || windowNanos < bucketCount) {
+            throw new IllegalArgumentException("Invalid window: " + windowNanos + "ns over " + bucketCount + " buckets");
+        }
+        this.bucketNanos = windowNanos / bucketCount;
+        this.bucketCount = bucketCount;
+        this.counts = new long[bucketCount * TYPE_COUNT];
+        this.sums = new long[bucketCount * TYPE_COUNT];
+    }
+    
+    // Called by the account for every new transaction, with the journal timestamp
+    synchronized void record(byte type, long amount, long timestampNanos) {
+        advance(timestampNanos);
+        int slot = (int) Math.floorMod(currentBucket, (long) bucketCount) * TYPE_COUNT + type;
+        counts[slot]++;
+        sums[slot] = Money.add(sums[slot], amount);
+        windowCounts[type]++;
+        windowSums[type] = Money.add(windowSums[type], amount);
+    }
+    
+    // Number of transactions of a type inside the window ending now
+    public synchronized long getCount(byte type) {
+        advance(TransactionJournal.currentEpochNanos());
+        return windowCounts[type];
+    }
+    
+    // Total amount in cents of transactions of a type inside the window ending now
+    public synchronized long getSum(byte type) {
+        advance(TransactionJournal.currentEpochNanos());
+        return windowSums[type];
+    }
+    
+    public double getRatePerSecond(byte type) {
+        return getCount(type) * 1e9 / getWindowNanos();
+    }
+    
+    public long getWindowNanos() {
+        return bucketNanos * bucketCount;
+    }
+    
+    // Expire the buckets that have left the window; the clock never moves the window back
+    private void advance(long nowNanos) {
+        long bucket = Math.floorDiv(nowNanos, bucketNanos);
+        if (bucket <= currentBucket) {
+            return;
+        }
+        long expired = currentBucket == Long.MIN_VALUE ? bucketCount : Math.min(bucket - currentBucket, bucketCount);
+        for (long i = expired - 1; i >= 0; i--) {
+            int base = (int) Math.floorMod(bucket - i, (long) bucketCount) * TYPE_COUNT;
+            for (int type = 0; type < TYPE_COUNT; type++) {
+                windowCounts[type] -= counts[base + type];
+                windowSums[type] -= sums[base + type];
+                counts[base + type] = 0;
+                sums[base + type] = 0;
+            }
+        }
+        currentBucket = bucket;
+    }
+}
@@ -0,0 +1,72 @@
+import benchmarks.BankFixtures;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * BankBenchmarkFixtures - the default-package side of benchmarks.BankFixtures. It lives in
+ * the benchmark module, next to the JMH code, so the bank sources need nothing extra.
+ */
+public class BankBenchmarkFixtures implements BankFixtures {
+    public LongSupplier deposit(long openingBalance) {
+        BankAccount account = newAccount(openingBalance);
+        return () -> account.deposit(1) ? 1 : 0;
+    }
+    
+    public LongSupplier withdraw(long openingBalance) {
+        BankAccount account = newAccount(openingBalance);
+        return () -> account.withdraw(1) ? 1 : 0;
+    }
+    
+    public LongSupplier alternatingTransfer(long openingBalance) {
+        BankAccount first = newAccount(openingBalance);
+        BankAccount second = newAccount(openingBalance);
+        return new LongSupplier() {
+            private boolean forward;
+            
+            public long getAsLong() {
+                forward = !forward;
+                return (forward ? first.transfer(second, 1) : second.transfer(first, 1)) ? 1 : 0;
+            }
+        };
+    }
+    
+    public LongSupplier randomTransfer(int count, long openingBalance) {
+        BankAccount[] accounts = new BankAccount[count];
+        for (int i = 0; i < count; i++) {
+            accounts[i] = newAccount(openingBalance);
+        }
+        return () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int from = random.nextInt(count);
+            int to = (from + 1 + random.nextInt(count - 1)) % count;
+            return accounts[from].transfer(accounts[to], 1) ? 1 : 0;
+        };
+    }
+    
+    public LongSupplier addTransaction(boolean velocityTracked) {
+        BankAccount account = newAccount(0);
+        if (velocityTracked) {
+            account.enableVelocityTracking(60, TimeUnit.SECONDS, 60);
+        }
+        return () -> {
+            account.addTransaction(TransactionJournal.DEPOSIT, 1, TransactionJournal.NO_ACCOUNT, 1);
+            return 1;
+        };
+    }
+    
+    public LongSupplier recentTransactions(int history) {
+        BankAccount account = newAccount(0);
+        for (int i = 0; i < history; i++) {
+            account.addTransaction(TransactionJournal.DEPOSIT, 1, TransactionJournal.NO_ACCOUNT, i);
+        }
+        return () -> {
+            account.displayRecentTransactions();
+            return 1;
+        };
+    }
+    
+    private static BankAccount newAccount(long balance) {
+        return new BankAccount("Benchmark", balance, new TransactionJournal());
+    }
+}
@@ -0,0 +1,149 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * BankBenchmarks - JMH benchmarks for the bank hot paths: deposit, withdraw, transfer,
+ * journal appends through addTransaction, and displayRecentTransactions on a large history,
+ * single-threaded and with several threads contending for the same accounts.
+ *
+ * Accounts are rebuilt before every iteration so journal growth in one iteration does not
+ * skew the next. Console output from the operations is sent to a null stream, but it is
+ * still formatted, as it would be in production.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BankBenchmarks {
+    static final int LARGE_HISTORY = 1_000_000;
+    static final int CONTENDED_ACCOUNTS = 4;
+    static final long LARGE_BALANCE = Long.MAX_VALUE / 4;
+    
+    // Used by the multi-threaded benchmarks, so they contend even on small machines
+    static final int THREADS = 4;
+    
+    static final BankFixtures FIXTURES = BankFixtures.load();
+    
+    /**
+     * Discards console output for the whole trial; the other states take it in their
+     * setup so it is in place before any account is built
+     */
+    @State(Scope.Benchmark)
+    public static class Console {
+        private PrintStream saved;
+        
+        @Setup(Level.Trial)
+        public void silence() {
+            saved = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+        
+        @TearDown(Level.Trial)
+        public void restore() {
+            System.setOut(saved);
+        }
+    }
+    
+    /**
+     * Accounts private to one benchmark thread
+     */
+    @State(Scope.Thread)
+    public static class OwnAccounts {
+        LongSupplier deposit;
+        LongSupplier withdraw;
+        LongSupplier transfer;
+        LongSupplier addTransaction;
+        LongSupplier addTransactionVelocityTracked;
+        
+        @Setup(Level.Iteration)
+        public void setUp(Console console) {
+            deposit = FIXTURES.deposit(0);
+            withdraw = FIXTURES.withdraw(LARGE_BALANCE);
+            transfer = FIXTURES.alternatingTransfer(LARGE_BALANCE);
+            addTransaction = FIXTURES.addTransaction(false);
+            addTransactionVelocityTracked = FIXTURES.addTransaction(true);
+        }
+    }
+    
+    /**
+     * Accounts shared by every benchmark thread
+     */
+    @State(Scope.Benchmark)
+    public static class SharedAccounts {
+        LongSupplier deposit;
+        LongSupplier transfer;
+        
+        @Setup(Level.Iteration)
+        public void setUp(Console console) {
+            deposit = FIXTURES.deposit(0);
+            transfer = FIXTURES.randomTransfer(CONTENDED_ACCOUNTS, LARGE_BALANCE);
+        }
+    }
+    
+    /**
+     * One account with LARGE_HISTORY rows, built once since reading it adds nothing
+     */
+    @State(Scope.Benchmark)
+    public static class LargeHistory {
+        LongSupplier recentTransactions;
+        
+        @Setup(Level.Trial)
+        public void setUp(Console console) {
+            recentTransactions = FIXTURES.recentTransactions(LARGE_HISTORY);
+        }
+    }
+    
+    @Benchmark
+    public long deposit(OwnAccounts accounts) {
+        return accounts.deposit.getAsLong();
+    }
+    
+    @Benchmark
+    public long withdraw(OwnAccounts accounts) {
+        return accounts.withdraw.getAsLong();
+    }
+    
+    @Benchmark
+    public long transfer(OwnAccounts accounts) {
+        return accounts.transfer.getAsLong();
+    }
+    
+    @Benchmark
+    public long addTransaction(OwnAccounts accounts) {
+        return accounts.addTransaction.getAsLong();
+    }
+    
+    @Benchmark
+    public long addTransactionVelocityTracked(OwnAccounts accounts) {
+        return accounts.addTransactionVelocityTracked.getAsLong();
+    }
+    
+    @Benchmark
+    public long recentTransactionsLargeHistory(LargeHistory history) {
+        return history.recentTransactions.getAsLong();
+    }
+    
+    @Benchmark
+    @Threads(THREADS)
+    public long depositOwnAccount(OwnAccounts accounts) {
+        return accounts.deposit.getAsLong();
+    }
+    
+    @Benchmark
+    @Threads(THREADS)
+    public long depositContended(SharedAccounts accounts) {
+        return accounts.deposit.getAsLong();
+    }
+    
+    @Benchmark
+    @Threads(THREADS)
+    public long transferContended(SharedAccounts accounts) {
+        return accounts.transfer.getAsLong();
+    }
+}
@@ -0,0 +1,40 @@
+package benchmarks;
+
+import java.util.function.LongSupplier;
+
+/**
+ * BankFixtures - builds the bank objects the benchmarks drive and hands them back as
+ * operations. JMH will not generate benchmarks in the default package, and code in a named
+ * package cannot refer to the default-package bank classes, so the implementation,
+ * BankBenchmarkFixtures, sits in the default package and is looked up by name.
+ *
+ * Each operation performs one call and returns 1 if it succeeded, so JMH can consume
+ * the result. Every fixture gets its own TransactionJournal.
+ */
+public interface BankFixtures {
+    // Deposits 1 cent per call into a new account
+    LongSupplier deposit(long openingBalance);
+    
+    // Withdraws 1 cent per call from a new account
+    LongSupplier withdraw(long openingBalance);
+    
+    // Transfers 1 cent per call between two new accounts, alternating direction; not thread-safe
+    LongSupplier alternatingTransfer(long openingBalance);
+    
+    // Transfers 1 cent per call between a random pair of the given number of new accounts
+    LongSupplier randomTransfer(int accounts, long openingBalance);
+    
+    // Appends a journal row per call through addTransaction, optionally with velocity tracking on
+    LongSupplier addTransaction(boolean velocityTracked);
+    
+    // Prints the recent transactions of an account that already has the given number of rows
+    LongSupplier recentTransactions(int history);
+    
+    static BankFixtures load() {
+        try {
+            return (BankFixtures) Class.forName("BankBenchmarkFixtures").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BankBenchmarkFixtures is not on the class path", e);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+import java.util.Arrays;
+
+/**
+ * BatchCalculator class - Calculator operations applied element by element across arrays.
+ * The loops are plain counted loops over primitive arrays with no calls or branches in the
+ * body, the shape HotSpot's C2 compiler turns into SIMD instructions. Failures are not
+ * thrown mid-batch: a division or modulus by zero, or the square root of a negative number,
+ * leaves NaN in that output element, sets its flag in the optional error mask, and is
+ * counted in the return value. The output may be one of the input arrays, e.g.
+ * squareRoot(a, a, errors): failures are detected from the inputs before out is written.
+ *
+ * With -Dcalculator.batch.vector=true, add, subtract, multiply, divide, squaring and
+ * squareRoot run through VectorKernels instead, written with the incubating Vector API for
+ * JVMs where C2 does not vectorize the plain loops. It lives in vector/ and needs
+ * --add-modules jdk.incubator.vector both to compile and to run; if it cannot be loaded,
+ * a warning is printed and the plain loops are used. The results are the same either way,
+ * as these operations are exactly rounded. Modulus and general powers always use the plain
+ * loops, since the Vector API has no exact equivalent of % or Math.pow.
+ */
+public final class BatchCalculator {
+    private static final Kernels VECTOR = loadVectorKernels();
+    
+    /**
+     * The loops VectorKernels replaces; each covers elements [0, n)
+     */
+    interface Kernels {
+        void add(double[] a, double[] b, double[] out, int n);
+        void subtract(double[] a, double[] b, double[] out, int n);
+        void multiply(double[] a, double[] b, double[] out, int n);
+        void divide(double[] a, double[] b, double[] out, int n);
+        void square(double[] a, double[] out, int n);
+        void squareRoot(double[] a, double[] out, int n);
+    }
+    
+    private BatchCalculator() { }
+    
+    // True if the batch operations run through VectorKernels
+    public static boolean isVectorized() {
+        return VECTOR != null;
+    }
+    
+    // Each method returns the number of failed elements; errors may be null if the mask is not wanted
+    
+    public static int add(double[] a, double[] b, double[] out, boolean[] errors) {
+        int n = checkLengths(a, b, out, errors);
+        if (VECTOR != null) {
+            VECTOR.add(a, b, out, n);
+        } else {
+            for (int i = 0; i < n; i++) {
+                out[i] = a[i] + b[i];
+            }
+        }
+        return clearErrors(errors, n);
+    }
+    
+    public static int subtract(double[] a, double[] b, double[] out, boolean[] errors) {
+        int n = checkLengths(a, b, out, errors);
+        if (VECTOR != null) {
+            VECTOR.subtract(a, b, out, n);
+        } else {
+            for (int i = 0; i < n; i++) {
+                out[i] = a[i] - b[i];
+            }
+        }
+        return clearErrors(errors, n);
+    }
+    
+    public static int multiply(double[] a, double[] b, double[] out, boolean[] errors) {
+        int n = checkLengths(a, b, out, errors);
+        if (VECTOR != null) {
+            VECTOR.multiply(a, b, out, n);
+        } else {
+            for (int i = 0; i < n; i++) {
+                out[i] = a[i] * b[i];
+            }
+        }
+        return clearErrors(errors, n);
+    }
+    
+    public static int divide(double[] a, double[] b, double[] out, boolean[] errors) {
+        int n = checkLengths(a, b, out, errors);
+        boolean[] zeros = findZeroDivisors(b, errors, n);
+        if (VECTOR != null) {
+            VECTOR.divide(a, b, out, n);
+        } else {
+            for (int i = 0; i < n; i++) {
+                out[i] = a[i] / b[i];
+            }
+        }
+        // Zero divisors are rare, so fix them up in a second pass instead of branching above
+        return markFailed(zeros, out, n);
+    }
+    
+    public static int modulus(double[] a, double[] b, double[] out, boolean[] errors) {
+        int n = checkLengths(a, b, out, errors);
+        boolean[] zeros = findZeroDivisors(b, errors, n);
+        for (int i = 0; i < n; i++) {
+            out[i] = a[i] % b[i];
+        }
+        return markFailed(zeros, out, n);
+    }
+    
+    public static int power(double[] base, double[] exponent, double[] out, boolean[] errors) {
+        int n = checkLengths(base, exponent, out, errors);
+        for (int i = 0; i < n; i++) {
+            out[i] = Math.pow(base[i], exponent[i]);
+        }
+        return clearErrors(errors, n);
+    }
+    
+    // The same exponent for every element, e.g. squaring a column
+    public static int power(double[] base, double exponent, double[] out, boolean[] errors) {
+        int n = checkLengths(base, base, out, errors);
+        if (exponent == 2 && VECTOR != null) {
+            VECTOR.square(base, out, n);
+        } else if (exponent == 2) {
+            for (int i = 0; i < n; i++) {
+                out[i] = base[i] * base[i];
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                out[i] = Math.pow(base[i], exponent);
+            }
+        }
+        return clearErrors(errors, n);
+    }
+    
+    public static int squareRoot(double[] a, double[] out, boolean[] errors) {
+        int n = checkLengths(a, a, out, errors);
+        // Count negatives before out is written, as it may be a; Math.sqrt gives them NaN by itself
+        int failed = 0;
+        for (int i = 0; i < n; i++) {
+            boolean negative = a[i] < 0;
+            if (errors != null) {
+                errors[i] = negative;
+            }
+            failed += negative ? 1 : 0;
+        }
+        if (VECTOR != null) {
+            VECTOR.squareRoot(a, out, n);
+        } else {
+            for (int i = 0; i < n; i++) {
+                out[i] = Math.sqrt(a[i]);
+            }
+        }
+        return failed;
+    }
+    
+    // VectorKernels when the switch is on and it can be loaded, otherwise null
+    private static Kernels loadVectorKernels() {
+        if (!Boolean.getBoolean("calculator.batch.vector")) {
+            return null;
+        }
+        try {
+            return (Kernels) Class.forName("VectorKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.err.println("Warning: vector batch mode is unavailable, using plain loops: " + e);
+            return null;
+        }
+    }
+    
+    // Flag zero divisors before out is written, as it may be the divisor array. Returns the mask
+    // for markFailed: errors when given, a new array when there are zeros but no errors, else null
+    private static boolean[] findZeroDivisors(double[] divisor, boolean[] errors, int n) {
+        boolean any = false;
+        for (int i = 0; i < n; i++) {
+            boolean zero = divisor[i] == 0;
+            if (errors != null) {
+                errors[i] = zero;
+            }
+            any |= zero;
+        }
+        if (!any || errors != null) {
+            return any ? errors : null;
+        }
+        boolean[] zeros = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            zeros[i] = divisor[i] == 0;
+        }
+        return zeros;
+    }
+    
+    // Set NaN where the mask is set; returns how many were
+    private static int markFailed(boolean[] mask, double[] out, int n) {
+        if (mask == null) {
+            return 0;
+        }
+        int failed = 0;
+        for (int i = 0; i < n; i++) {
+            if (mask[i]) {
+                out[i] = Double.NaN;
+                failed++;
+            }
+        }
+        return failed;
+    }
+    
+    private static int clearErrors(boolean[] errors, int n) {
+        if (errors != null) {
+            Arrays.fill(errors, 0, n, false);
+        }
+        return 0;
+    }
+    
+    private static int checkLengths(double[] a, double[] b, double[] out, boolean[] errors) {
+        int n = a.length;
+        if (b.length != n || out.length < n || (errors != null && errors.length < n)) {
+            throw new IllegalArgumentException("Array lengths do not match: operands " + a.length + " and " + b.length
+                    + ", output " + out.length + (errors != null ? ", errors " + errors.length : ""));
+        }
+        return n;
+    }
+}
@@ -1,3 +1,5 @@
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Scanner;
 
 /**
@@ -5,28 +7,41 @@ import java.util.Scanner;
  * with proper error handling and input validation.
  */
 public class Calculator {
+    private static final String HISTORY_FILE = "calculator-history.bin";
+    private static final int MEMO_ENTRIES = 1024;
+    
     private Scanner scanner;
+    private SessionHistory history;
+    private final MemoCache memo = new MemoCache(MEMO_ENTRIES);
     
     public Calculator() {
         scanner = new Scanner(System.in);
+        try {
+            history = SessionHistory.open(Paths.get(HISTORY_FILE));
+        } catch (IOException e) {
+            System.out.println("Warning: history is off, could not open " + HISTORY_FILE + ": " + e.getMessage());
+        }
     }
     
     public void start() {
         System.out.println("=== Advanced Calculator ===");
-        System.out.println("Available operations: +, -, *, /, %, ^, sqrt");
+        System.out.println("Available operations: +, -, *, /, %, ^, sqrt and full expressions");
+        System.out.println("Numbers may also be ans (last result) or $n (result n)");
         
         while (true) {
             try {
                 displayMenu();
                 int choice = getChoice();
                 
-                if (choice == 8) {
+                if (choice == 9) {
+                    reportMemo();
                     System.out.println("Thank you for using the calculator!");
+                    closeHistory();
                     break;
                 }
                 
                 performOperation(choice);
-                
+            
             } catch (Exception e) {
                 System.out.println("Error: " + e.getMessage());
                 scanner.nextLine(); // Clear invalid input
@@ -36,125 +51,160 @@ public class Calculator {
     
     private void displayMenu() {
         System.out.println("\n--- Calculator Menu ---");
-        System.out.println("1. Addition (+)");
-        System.out.println("2. Subtraction (-)");
-        System.out.println("3. Multiplication (*)");
-        System.out.println("4. Division (/)");
-        System.out.println("5. Modulus (%)");
-        System.out.println("6. Power (^)");
-        System.out.println("7. Square Root");
-        System.out.println("8. Exit");
-        System.out.print("Choose an operation (1-8): ");
+        for (Operator operator : Operator.values()) {
+            System.out.println(operator.getChoice() + ". " + operator.getLabel());
+        }
+        System.out.println("8. Evaluate Expression");
+        System.out.println("9. Exit");
+        System.out.print("Choose an operation (1-9): ");
     }
     
     private int getChoice() {
         int choice = scanner.nextInt();
-        if (choice < 1 || choice > 8) {
-            throw new IllegalArgumentException("Please enter a number between 1 and 8");
+        if (choice < 1 || choice > 9) {
+            throw new IllegalArgumentException("Please enter a number between 1 and 9");
         }
         return choice;
     }
     
-    private void performOperation(int choice) {
-        double result = 0;
-        double num1, num2;
+    // Prompting and printing only; the arithmetic itself is Operator.apply
+    private void performOperation(int choice) throws IOException {
+        if (choice == 8) {
+            evaluateExpression();
+            return;
+        }
         
-        switch (choice) {
-            case 1: // Addition
-                System.out.print("Enter first number: ");
-                num1 = scanner.nextDouble();
-                System.out.print("Enter second number: ");
-                num2 = scanner.nextDouble();
-                result = add(num1, num2);
-                System.out.printf("%.2f + %.2f = %.2f%n", num1, num2, result);
-                break;
-                
-            case 2: // Subtraction
-                System.out.print("Enter first number: ");
-                num1 = scanner.nextDouble();
-                System.out.print("Enter second number: ");
-                num2 = scanner.nextDouble();
-                result = subtract(num1, num2);
-                System.out.printf("%.2f - %.2f = %.2f%n", num1, num2, result);
-                break;
-                
-            case 3: // Multiplication
-                System.out.print("Enter first number: ");
-                num1 = scanner.nextDouble();
-                System.out.print("Enter second number: ");
-                num2 = scanner.nextDouble();
-                result = multiply(num1, num2);
-                System.out.printf("%.2f * %.2f = %.2f%n", num1, num2, result);
-                break;
-                
-            case 4: // Division
-                System.out.print("Enter dividend: ");
-                num1 = scanner.nextDouble();
-                System.out.print("Enter divisor: ");
-                num2 = scanner.nextDouble();
-                result = divide(num1, num2);
-                System.out.printf("%.2f / %.2f = %.2f%n", num1, num2, result);
-                break;
-                
-            case 5: // Modulus
-                System.out.print("Enter first number: ");
-                num1 = scanner.nextDouble();
-                System.out.print("Enter second number: ");
-                num2 = scanner.nextDouble();
-                result = modulus(num1, num2);
-                System.out.printf("%.2f %% %.2f = %.2f%n", num1, num2, result);
-                break;
-                
-            case 6: // Power
-                System.out.print("Enter base: ");
-                num1 = scanner.nextDouble();
-                System.out.print("Enter exponent: ");
-                num2 = scanner.nextDouble();
-                result = power(num1, num2);
-                System.out.printf("%.2f ^ %.2f = %.2f%n", num1, num2, result);
-                break;
-                
-            case 7: // Square Root
-                System.out.print("Enter number: ");
-                num1 = scanner.nextDouble();
-                result = squareRoot(num1);
-                System.out.printf("√%.2f = %.2f%n", num1, result);
-                break;
+        Operator operator = Operator.forChoice(choice);
+        System.out.print(operator.getFirstPrompt());
+        double num1 = readOperand();
+        double num2 = 0;
+        if (!operator.isUnary()) {
+            System.out.print(operator.getSecondPrompt());
+            num2 = readOperand();
+        }
+        
+        double result;
+        try {
+            result = compute(operator, num1, num2);
+        } catch (ArithmeticException e) {
+            if (history != null) {
+                history.recordError(operator, num1, num2);
+                history.flush();
+            }
+            throw e;
+        }
+        String number = "";
+        if (history != null) {
+            number = "$" + history.record(operator, num1, num2, result) + ": ";
+            history.flush();
+        }
+        
+        if (operator.isUnary()) {
+            System.out.printf("%s%s%.2f = %.2f%n", number, operator.getSymbol(), num1, result);
+        } else {
+            System.out.printf("%s%.2f %s %.2f = %.2f%n", number, num1, operator.getSymbol(), num2, result);
+        }
+    }
+    
+    // Power and square root results are memoized; the other operators cost less than a lookup
+    private double compute(Operator operator, double a, double b) {
+        if (operator == Operator.POWER) {
+            return memo.power(a, b);
+        }
+        if (operator == Operator.SQUARE_ROOT) {
+            return memo.squareRoot(a);
+        }
+        return operator.apply(a, b);
+    }
+    
+    private void reportMemo() {
+        long lookups = memo.getHits() + memo.getMisses();
+        if (lookups > 0) {
+            System.out.printf("Memo cache: %d of %d power/square root results reused (%.1f%% hit ratio)%n",
+                    memo.getHits(), lookups, 100 * memo.getHitRatio());
+        }
+    }
+    
+    // A number, or with history on, ans or $n
+    private double readOperand() throws IOException {
+        if (history == null) {
+            return scanner.nextDouble();
+        }
+        return history.resolve(scanner.next());
+    }
+    
+    private void closeHistory() {
+        if (history != null) {
+            try {
+                history.close();
+            } catch (IOException e) {
+                System.out.println("Warning: could not save history: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void evaluateExpression() throws IOException {
+        scanner.nextLine(); // Consume newline
+        System.out.print("Enter expression (e.g. (a+b)^2/sqrt(c)): ");
+        String text = scanner.nextLine();
+        
+        // The whole line has been read, so report errors here rather than let start() skip a line
+        try {
+            Expression expression = Expression.compile(text);
+            String[] variables = expression.getVariables();
+            double[] values = new double[variables.length];
+            for (int i = 0; i < variables.length; i++) {
+                System.out.print("Enter value for " + variables[i] + ": ");
+                values[i] = readOperand();
+            }
+            if (variables.length > 0) {
+                scanner.nextLine(); // Consume newline
+            }
+            
+            double result = expression.evaluate(values);
+            String number = "";
+            if (history != null) {
+                number = "$" + history.recordExpression(result) + ": ";
+                history.flush();
+            }
+            System.out.printf("%s%s = %.2f%n", number, text.trim(), result);
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            System.out.println("Error: " + e.getMessage());
         }
     }
     
     // Arithmetic operation methods
-    private double add(double a, double b) {
+    static double add(double a, double b) {
         return a + b;
     }
     
-    private double subtract(double a, double b) {
+    static double subtract(double a, double b) {
         return a - b;
     }
     
-    private double multiply(double a, double b) {
+    static double multiply(double a, double b) {
         return a * b;
     }
     
-    private double divide(double a, double b) {
+    static double divide(double a, double b) {
         if (b == 0) {
             throw new ArithmeticException("Division by zero is not allowed");
         }
         return a / b;
     }
     
-    private double modulus(double a, double b) {
+    static double modulus(double a, double b) {
         if (b == 0) {
             throw new ArithmeticException("Modulus by zero is not allowed");
         }
         return a % b;
     }
     
-    private double power(double base, double exponent) {
+    static double power(double base, double exponent) {
         return Math.pow(base, exponent);
     }
     
-    private double squareRoot(double number) {
+    static double squareRoot(double number) {
         if (number < 0) {
             throw new ArithmeticException("Square root of negative number is not allowed");
         }
@@ -0,0 +1,411 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * CsvEvaluator class - streams a numeric CSV file through a compiled Expression and writes
+ * each row back out with the result appended as a new last column.
+ *
+ * The input is read through a FileChannel in fixed-size chunks. Each chunk is cut at line
+ * boundaries into one slice per core, the slices are evaluated in parallel, and their
+ * output is written in order, so memory use depends on the chunk size and not on the file
+ * size. Fields are parsed straight from the bytes; only the columns the formula uses are
+ * parsed, and no String is created for them.
+ *
+ * Variables name columns: by header name if the file has a header row, or as c1, c2, ...
+ * by position. A row whose fields are missing or not numbers, or whose evaluation fails
+ * (division by zero and the like), gets ERROR as its result.
+ *
+ * Usage: java CsvEvaluator input.csv output.csv "formula" [--no-header]
+ */
+public class CsvEvaluator {
+    private static final int CHUNK_BYTES = 4 * 1024 * 1024;
+    private static final byte[] ERROR = ",ERROR\n".getBytes(StandardCharsets.US_ASCII);
+    
+    private final Expression expression;
+    private final boolean header;
+    private final int parallelism;
+    private long rows;
+    private long errors;
+    
+    public CsvEvaluator(Expression expression, boolean header) {
+        this(expression, header, Runtime.getRuntime().availableProcessors());
+    }
+    
+    public CsvEvaluator(Expression expression, boolean header, int parallelism) {
+        this.expression = expression;
+        this.header = header;
+        this.parallelism = Math.max(1, parallelism);
+    }
+    
+    public long getRows() { return rows; }
+    public long getErrors() { return errors; }
+    
+    // Evaluate every row of input into output; returns the number of data rows
+    public long run(Path input, Path output) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, task -> {
+            Thread thread = new Thread(task, "csv-evaluator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            return stream(in, out, pool);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    private long stream(FileChannel in, FileChannel out, ExecutorService pool) throws IOException {
+        byte[] chunk = new byte[CHUNK_BYTES];
+        ByteBuffer chunkBuffer = ByteBuffer.wrap(chunk);
+        Slice[] slices = new Slice[parallelism];
+        int[] slotOfColumn = null;
+        int filled = 0;
+        boolean endOfInput = false;
+        rows = 0;
+        errors = 0;
+        
+        while (!endOfInput || filled > 0) {
+            // Top the chunk up after whatever partial line was carried over
+            chunkBuffer.limit(CHUNK_BYTES).position(filled);
+            while (chunkBuffer.hasRemaining()) {
+                if (in.read(chunkBuffer) < 0) {
+                    endOfInput = true;
+                    break;
+                }
+            }
+            filled = chunkBuffer.position();
+            if (filled == 0) {
+                break;
+            }
+            
+            int end = endOfInput ? filled : lastLineEnd(chunk, filled);
+            if (end < 0) {
+                throw new IOException("Line longer than " + CHUNK_BYTES + " bytes");
+            }
+            int start = 0;
+            if (slotOfColumn == null) {
+                int firstLineEnd = lineEnd(chunk, 0, end);
+                slotOfColumn = resolveColumns(chunk, firstLineEnd);
+                if (header) {
+                    start = Math.min(firstLineEnd + 1, end);
+                    writeHeader(out, chunk, firstLineEnd);
+                }
+            }
+            
+            evaluateInParallel(chunk, start, end, slices, slotOfColumn, pool);
+            for (Slice slice : slices) {
+                if (slice != null) {
+                    write(out, ByteBuffer.wrap(slice.output, 0, slice.outputLength));
+                    rows += slice.rows;
+                    errors += slice.errors;
+                    slice.reset();
+                }
+            }
+            
+            // Carry the unfinished last line to the front of the chunk
+            System.arraycopy(chunk, end, chunk, 0, filled - end);
+            filled -= end;
+        }
+        return rows;
+    }
+    
+    private void evaluateInParallel(byte[] chunk, int start, int end, Slice[] slices, int[] slotOfColumn,
+                                    ExecutorService pool) throws IOException {
+        List<Future<?>> futures = new ArrayList<>(parallelism);
+        int sliceStart = start;
+        for (int s = 0; s < parallelism && sliceStart < end; s++) {
+            int sliceEnd = s == parallelism - 1 ? end
+                    : lineEnd(chunk, Math.max(sliceStart, start + (int) ((long) (end - start) * (s + 1) / parallelism)), end);
+            sliceEnd = Math.min(end, sliceEnd + 1);
+            if (slices[s] == null) {
+                slices[s] = new Slice(expression.getVariables().length);
+            }
+            Slice slice = slices[s];
+            int from = sliceStart;
+            int to = sliceEnd;
+            futures.add(pool.submit(() -> slice.evaluate(expression, chunk, from, to, slotOfColumn)));
+            sliceStart = sliceEnd;
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while evaluating", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Evaluation failed", e.getCause());
+            }
+        }
+    }
+    
+    // Map each column index to the expression slot it feeds, or -1 if unused
+    private int[] resolveColumns(byte[] chunk, int firstLineEnd) {
+        String[] names = header ? splitHeader(chunk, firstLineEnd) : new String[0];
+        String[] variables = expression.getVariables();
+        int[] columns = new int[variables.length];
+        int maxColumn = -1;
+        for (int v = 0; v < variables.length; v++) {
+            columns[v] = indexOf(names, variables[v]);
+            if (columns[v] < 0 && variables[v].matches("c[1-9][0-9]*")) {
+                columns[v] = Integer.parseInt(variables[v].substring(1)) - 1;
+            }
+            if (columns[v] < 0) {
+                throw new IllegalArgumentException("No column for variable: " + variables[v]);
+            }
+            maxColumn = Math.max(maxColumn, columns[v]);
+        }
+        
+        int[] slotOfColumn = new int[maxColumn + 1];
+        Arrays.fill(slotOfColumn, -1);
+        for (int v = 0; v < columns.length; v++) {
+            if (slotOfColumn[columns[v]] >= 0) {
+                throw new IllegalArgumentException("Variables " + variables[slotOfColumn[columns[v]]] + " and "
+                        + variables[v] + " name the same column");
+            }
+            slotOfColumn[columns[v]] = v;
+        }
+        return slotOfColumn;
+    }
+    
+    private static String[] splitHeader(byte[] chunk, int lineEnd) {
+        int end = lineEnd > 0 && chunk[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+        String[] names = new String(chunk, 0, end, StandardCharsets.UTF_8).split(",", -1);
+        for (int i = 0; i < names.length; i++) {
+            names[i] = names[i].trim();
+        }
+        return names;
+    }
+    
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static void writeHeader(FileChannel out, byte[] chunk, int lineEnd) throws IOException {
+        int end = lineEnd > 0 && chunk[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+        write(out, ByteBuffer.wrap(chunk, 0, end));
+        write(out, ByteBuffer.wrap(",result\n".getBytes(StandardCharsets.US_ASCII)));
+    }
+    
+    private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+    
+    // Offset just past the last newline in chunk[0, length), or -1 if there is none
+    private static int lastLineEnd(byte[] chunk, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (chunk[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+    
+    // Offset of the first newline at or after from, or end if there is none
+    private static int lineEnd(byte[] chunk, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (chunk[i] == '\n') {
+                return i;
+            }
+        }
+        return end;
+    }
+    
+    /**
+     * One worker's share of a chunk; buffers are kept between chunks, so steady state allocates little
+     */
+    private static final class Slice {
+        final double[] slots;
+        byte[] output = new byte[64 * 1024];
+        int outputLength;
+        long rows;
+        long errors;
+        private boolean valid;
+        
+        Slice(int variables) {
+            slots = new double[variables];
+        }
+        
+        void reset() {
+            outputLength = 0;
+            rows = 0;
+            errors = 0;
+        }
+        
+        void evaluate(Expression expression, byte[] chunk, int from, int to, int[] slotOfColumn) {
+            int lineStart = from;
+            while (lineStart < to) {
+                int lineEnd = lineEnd(chunk, lineStart, to);
+                int contentEnd = lineEnd > lineStart && chunk[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+                if (contentEnd > lineStart) {
+                    evaluateRow(expression, chunk, lineStart, contentEnd, slotOfColumn);
+                }
+                lineStart = lineEnd + 1;
+            }
+        }
+        
+        private void evaluateRow(Expression expression, byte[] chunk, int start, int end, int[] slotOfColumn) {
+            rows++;
+            int found = 0;
+            int column = 0;
+            int fieldStart = start;
+            boolean ok = true;
+            for (int i = start; i <= end && column < slotOfColumn.length; i++) {
+                if (i == end || chunk[i] == ',') {
+                    int slot = slotOfColumn[column];
+                    if (slot >= 0) {
+                        slots[slot] = parseDouble(chunk, fieldStart, i);
+                        ok &= valid;
+                        found++;
+                    }
+                    column++;
+                    fieldStart = i + 1;
+                }
+            }
+            
+            append(chunk, start, end);
+            if (ok && found == slots.length) {
+                try {
+                    appendResult(expression.evaluate(slots));
+                    return;
+                } catch (ArithmeticException e) {
+                    // Reported as ERROR below
+                }
+            }
+            errors++;
+            append(ERROR, 0, ERROR.length);
+        }
+        
+        private void appendResult(double result) {
+            String text = Double.toString(result);
+            ensureCapacity(text.length() + 2);
+            output[outputLength++] = ',';
+            for (int i = 0; i < text.length(); i++) {
+                output[outputLength++] = (byte) text.charAt(i);
+            }
+            output[outputLength++] = '\n';
+        }
+        
+        private void append(byte[] source, int from, int to) {
+            ensureCapacity(to - from);
+            System.arraycopy(source, from, output, outputLength, to - from);
+            outputLength += to - from;
+        }
+        
+        private void ensureCapacity(int extra) {
+            if (outputLength + extra > output.length) {
+                output = Arrays.copyOf(output, Math.max(output.length * 2, outputLength + extra));
+            }
+        }
+        
+        // Parse a decimal number from bytes; sets valid to false if it is not one
+        private double parseDouble(byte[] b, int start, int end) {
+            while (start < end && b[start] == ' ') {
+                start++;
+            }
+            while (end > start && b[end - 1] == ' ') {
+                end--;
+            }
+            valid = false;
+            int i = start;
+            boolean negative = false;
+            if (i < end && (b[i] == '-' || b[i] == '+')) {
+                negative = b[i] == '-';
+                i++;
+            }
+            
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean seenDigit = false;
+            for (; i < end && b[i] >= '0' && b[i] <= '9'; i++) {
+                seenDigit = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b[i] - '0');
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                } else {
+                    exponent++;
+                }
+            }
+            if (i < end && b[i] == '.') {
+                for (i++; i < end && b[i] >= '0' && b[i] <= '9'; i++) {
+                    seenDigit = true;
+                    if (digits < 18) {
+                        mantissa = mantissa * 10 + (b[i] - '0');
+                        if (mantissa != 0) {
+                            digits++;
+                        }
+                        exponent--;
+                    }
+                }
+            }
+            if (!seenDigit) {
+                return 0;
+            }
+            if (i < end && (b[i] == 'e' || b[i] == 'E')) {
+                i++;
+                boolean negativeExponent = false;
+                if (i < end && (b[i] == '-' || b[i] == '+')) {
+                    negativeExponent = b[i] == '-';
+                    i++;
+                }
+                int explicit = 0;
+                boolean seenExponentDigit = false;
+                for (; i < end && b[i] >= '0' && b[i] <= '9'; i++) {
+                    seenExponentDigit = true;
+                    explicit = Math.min(explicit * 10 + (b[i] - '0'), 100_000);
+                }
+                if (!seenExponentDigit) {
+                    return 0;
+                }
+                exponent += negativeExponent ? -explicit : explicit;
+            }
+            if (i != end) {
+                return 0;
+            }
+            valid = true;
+            
+            // Exact when the mantissa and the power of ten are both exact doubles; otherwise let the JDK round
+            if (mantissa < (1L << 53) && exponent >= -22 && exponent <= 22) {
+                double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+                return negative ? -value : value;
+            }
+            return Double.parseDouble(new String(b, start, end - start, StandardCharsets.US_ASCII));
+        }
+    }
+    
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: java CsvEvaluator input.csv output.csv \"formula\" [--no-header]");
+            return;
+        }
+        boolean header = !(args.length > 3 && args[3].equals("--no-header"));
+        CsvEvaluator evaluator = new CsvEvaluator(Expression.compile(args[2]), header);
+        
+        long start = System.nanoTime();
+        long rows = evaluator.run(Paths.get(args[0]), Paths.get(args[1]));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%,d rows, %,d errors, %.2f s (%,.0f rows/s)%n", rows, evaluator.getErrors(), seconds,
+                rows / Math.max(seconds, 1e-9));
+    }
+}
@@ -0,0 +1,364 @@
+import java.util.*;
+
+/**
+ * Expression class - a formula such as "(a+b)^2/sqrt(c)" parsed once into a tree of nodes
+ * that can then be evaluated any number of times with different variable values.
+ * Variables are resolved to slots at compile time, so evaluation is a walk over the tree
+ * reading a double[] - no parsing, map lookups or boxing. Constant sub-expressions are
+ * folded when compiled.
+ *
+ * Grammar, loosest binding first:
+ *   expression = term (('+' | '-') term)*
+ *   term       = unary (('*' | '/' | '%') unary)*
+ *   unary      = ('-' | '+') unary | power
+ *   power      = primary ('^' unary)?            right-associative, so -2^2 = -4
+ *   primary    = number | variable | 'sqrt' '(' expression ')' | '(' expression ')'
+ * Arithmetic follows Calculator: division or modulus by zero and the square root of a
+ * negative number throw ArithmeticException.
+ */
+public class Expression {
+    private final String source;
+    private final Node root;
+    private final String[] variables;
+    
+    private Expression(String source, Node root, String[] variables) {
+        this.source = source;
+        this.root = root;
+        this.variables = variables;
+    }
+    
+    // Parse and compile; throws IllegalArgumentException describing the first syntax error
+    public static Expression compile(String source) {
+        Parser parser = new Parser(source);
+        Node root = parser.parse();
+        return new Expression(source, root, parser.variables.toArray(new String[0]));
+    }
+    
+    // Evaluate with one value per variable, in the order given by getVariables()
+    public double evaluate(double... values) {
+        if (values.length < variables.length) {
+            throw new IllegalArgumentException("Expected " + variables.length + " variable values, got " + values.length);
+        }
+        return root.evaluate(values);
+    }
+    
+    public double evaluate(Map<String, Double> values) {
+        double[] slots = new double[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            Double value = values.get(variables[i]);
+            if (value == null) {
+                throw new IllegalArgumentException("No value for variable: " + variables[i]);
+            }
+            slots[i] = value;
+        }
+        return root.evaluate(slots);
+    }
+    
+    // Variable names in slot order, i.e. order of first appearance
+    public String[] getVariables() {
+        return variables.clone();
+    }
+    
+    // Slot of a variable, or -1 if the expression does not use it
+    public int slotOf(String variable) {
+        for (int i = 0; i < variables.length; i++) {
+            if (variables[i].equals(variable)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    public String getSource() { return source; }
+    
+    @Override
+    public String toString() {
+        return root.toString();
+    }
+    
+    // Compiled tree nodes
+    private abstract static class Node {
+        abstract double evaluate(double[] slots);
+        
+        boolean isConstant() {
+            return false;
+        }
+    }
+    
+    private static final class Constant extends Node {
+        final double value;
+        
+        Constant(double value) {
+            this.value = value;
+        }
+        
+        double evaluate(double[] slots) { return value; }
+        boolean isConstant() { return true; }
+        public String toString() { return Double.toString(value); }
+    }
+    
+    private static final class Variable extends Node {
+        final int slot;
+        final String name;
+        
+        Variable(int slot, String name) {
+            this.slot = slot;
+            this.name = name;
+        }
+        
+        double evaluate(double[] slots) { return slots[slot]; }
+        public String toString() { return name; }
+    }
+    
+    private static final class Negate extends Node {
+        final Node operand;
+        
+        Negate(Node operand) {
+            this.operand = operand;
+        }
+        
+        double evaluate(double[] slots) { return -operand.evaluate(slots); }
+        public String toString() { return "(-" + operand + ")"; }
+    }
+    
+    private static final class SquareRoot extends Node {
+        final Node operand;
+        
+        SquareRoot(Node operand) {
+            this.operand = operand;
+        }
+        
+        double evaluate(double[] slots) { return Calculator.squareRoot(operand.evaluate(slots)); }
+        public String toString() { return "sqrt(" + operand + ")"; }
+    }
+    
+    // One subclass per operator keeps each evaluate() call site small and easy for the JIT to inline
+    private abstract static class Binary extends Node {
+        final Node left;
+        final Node right;
+        final char symbol;
+        
+        Binary(Node left, Node right, char symbol) {
+            this.left = left;
+            this.right = right;
+            this.symbol = symbol;
+        }
+        
+        public String toString() { return "(" + left + " " + symbol + " " + right + ")"; }
+    }
+    
+    private static final class Add extends Binary {
+        Add(Node left, Node right) { super(left, right, '+'); }
+        double evaluate(double[] slots) { return Calculator.add(left.evaluate(slots), right.evaluate(slots)); }
+    }
+    
+    private static final class Subtract extends Binary {
+        Subtract(Node left, Node right) { super(left, right, '-'); }
+        double evaluate(double[] slots) { return Calculator.subtract(left.evaluate(slots), right.evaluate(slots)); }
+    }
+    
+    private static final class Multiply extends Binary {
+        Multiply(Node left, Node right) { super(left, right, '*'); }
+        double evaluate(double[] slots) { return Calculator.multiply(left.evaluate(slots), right.evaluate(slots)); }
+    }
+    
+    private static final class Divide extends Binary {
+        Divide(Node left, Node right) { super(left, right, '/'); }
+        double evaluate(double[] slots) { return Calculator.divide(left.evaluate(slots), right.evaluate(slots)); }
+    }
+    
+    private static final class Modulus extends Binary {
+        Modulus(Node left, Node right) { super(left, right, '%'); }
+        double evaluate(double[] slots) { return Calculator.modulus(left.evaluate(slots), right.evaluate(slots)); }
+    }
+    
+    private static final class Power extends Binary {
+        Power(Node left, Node right) { super(left, right, '^'); }
+        double evaluate(double[] slots) { return Calculator.power(left.evaluate(slots), right.evaluate(slots)); }
+    }
+    
+    /**
+     * Recursive-descent parser producing the node tree
+     */
+    private static final class Parser {
+        private static final double[] NO_SLOTS = new double[0];
+        
+        private final String text;
+        private final List<String> variables = new ArrayList<>();
+        private int position;
+        
+        Parser(String text) {
+            this.text = text;
+        }
+        
+        Node parse() {
+            Node node = expression();
+            skipSpaces();
+            if (position < text.length()) {
+                throw error("Unexpected '" + text.charAt(position) + "'");
+            }
+            return node;
+        }
+        
+        private Node expression() {
+            Node node = term();
+            while (true) {
+                if (accept('+')) {
+                    node = fold(new Add(node, term()));
+                } else if (accept('-')) {
+                    node = fold(new Subtract(node, term()));
+                } else {
+                    return node;
+                }
+            }
+        }
+        
+        private Node term() {
+            Node node = unary();
+            while (true) {
+                if (accept('*')) {
+                    node = fold(new Multiply(node, unary()));
+                } else if (accept('/')) {
+                    node = fold(new Divide(node, unary()));
+                } else if (accept('%')) {
+                    node = fold(new Modulus(node, unary()));
+                } else {
+                    return node;
+                }
+            }
+        }
+        
+        private Node unary() {
+            if (accept('-')) {
+                return fold(new Negate(unary()));
+            }
+            if (accept('+')) {
+                return unary();
+            }
+            return power();
+        }
+        
+        private Node power() {
+            Node base = primary();
+            if (accept('^')) {
+                return fold(new Power(base, unary()));
+            }
+            return base;
+        }
+        
+        private Node primary() {
+            skipSpaces();
+            if (position >= text.length()) {
+                throw error("Unexpected end of expression");
+            }
+            char c = text.charAt(position);
+            if (accept('(')) {
+                Node inner = expression();
+                expect(')');
+                return inner;
+            }
+            if (Character.isDigit(c) || c == '.') {
+                return number();
+            }
+            if (Character.isLetter(c) || c == '_') {
+                String name = identifier();
+                if (name.equals("sqrt")) {
+                    expect('(');
+                    Node operand = expression();
+                    expect(')');
+                    return fold(new SquareRoot(operand));
+                }
+                int slot = variables.indexOf(name);
+                if (slot < 0) {
+                    slot = variables.size();
+                    variables.add(name);
+                }
+                return new Variable(slot, name);
+            }
+            throw error("Unexpected '" + c + "'");
+        }
+        
+        private Node number() {
+            int start = position;
+            while (position < text.length() && (Character.isDigit(text.charAt(position)) || text.charAt(position) == '.')) {
+                position++;
+            }
+            if (position < text.length() && (text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+                int mark = position++;
+                if (position < text.length() && (text.charAt(position) == '+' || text.charAt(position) == '-')) {
+                    position++;
+                }
+                if (position < text.length() && Character.isDigit(text.charAt(position))) {
+                    while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                        position++;
+                    }
+                } else {
+                    position = mark; // Not an exponent after all, e.g. "2e" where e is a variable
+                }
+            }
+            try {
+                return new Constant(Double.parseDouble(text.substring(start, position)));
+            } catch (NumberFormatException e) {
+                position = start;
+                throw error("Invalid number");
+            }
+        }
+        
+        private String identifier() {
+            int start = position;
+            while (position < text.length()
+                    && (Character.isLetterOrDigit(text.charAt(position)) || text.charAt(position) == '_')) {
+                position++;
+            }
+            return text.substring(start, position);
+        }
+        
+        // Replace a node whose inputs are all constants by its value, unless evaluating it throws
+        private static Node fold(Node node) {
+            if (node instanceof Binary) {
+                Binary binary = (Binary) node;
+                if (!binary.left.isConstant() || !binary.right.isConstant()) {
+                    return node;
+                }
+            } else if (node instanceof Negate) {
+                if (!((Negate) node).operand.isConstant()) {
+                    return node;
+                }
+            } else if (node instanceof SquareRoot) {
+                if (!((SquareRoot) node).operand.isConstant()) {
+                    return node;
+                }
+            }
+            try {
+                return new Constant(node.evaluate(NO_SLOTS));
+            } catch (ArithmeticException e) {
+                return node; // Keep it, so the error is raised when evaluated, as Calculator would
+            }
+        }
+        
+        private boolean accept(char expected) {
+            skipSpaces();
+            if (position < text.length() && text.charAt(position) == expected) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+        
+        private void expect(char expected) {
+            if (!accept(expected)) {
+                throw error("Expected '" + expected + "'");
+            }
+        }
+        
+        private void skipSpaces() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+        
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + (position + 1) + " in: " + text);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+import java.util.Arrays;
+
+/**
+ * MemoCache class - a bounded memo table in front of Calculator's power and squareRoot,
+ * for workloads that keep repeating the same arguments. Keys are the raw bits of the
+ * double arguments, stored in parallel primitive arrays with linear probing, so lookups
+ * never box. When full, an entry is evicted with the CLOCK policy: a hand sweeps the
+ * table, clearing each entry's referenced bit and evicting the first entry found without
+ * one, which approximates LRU at no cost on hits beyond setting that bit.
+ *
+ * The calculator benchmarks (calculator/benchmarks) show when it pays: power wins while the
+ * working set fits the cache, but squareRoot is a single hardware instruction and a lookup
+ * costs more than that.
+ *
+ * Not thread-safe; give each thread its own cache.
+ */
+public class MemoCache {
+    private static final byte EMPTY = 0;
+    private static final byte POWER = 1;
+    private static final byte SQUARE_ROOT = 2;
+    
+    private final int maxEntries;
+    private final int mask;
+    private final byte[] operations;
+    private final long[] firstKeys;
+    private final long[] secondKeys;
+    private final double[] values;
+    private final boolean[] referenced;
+    private int size;
+    private int hand;
+    private long hits;
+    private long misses;
+    
+    public MemoCache(int maxEntries) {
+        if (maxEntries <= 0 || maxEntries > (1 << 29)) {
+            throw new IllegalArgumentException("Invalid cache size: " + maxEntries);
+        }
+        // Keep the table at most half full so probe sequences stay short
+        int capacity = Integer.highestOneBit(maxEntries * 2 - 1) << 1;
+        this.maxEntries = maxEntries;
+        this.mask = capacity - 1;
+        this.operations = new byte[capacity];
+        this.firstKeys = new long[capacity];
+        this.secondKeys = new long[capacity];
+        this.values = new double[capacity];
+        this.referenced = new boolean[capacity];
+    }
+    
+    public double power(double base, double exponent) {
+        return lookup(POWER, base, exponent);
+    }
+    
+    // Negative numbers throw as in Calculator and are never cached
+    public double squareRoot(double number) {
+        if (number < 0) {
+            return Calculator.squareRoot(number);
+        }
+        return lookup(SQUARE_ROOT, number, 0);
+    }
+    
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public int size() { return size; }
+    
+    // Share of lookups answered from the cache, 0 before the first lookup
+    public double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+    
+    public void clear() {
+        Arrays.fill(operations, EMPTY);
+        Arrays.fill(referenced, false);
+        size = 0;
+        hand = 0;
+        hits = 0;
+        misses = 0;
+    }
+    
+    private double lookup(byte operation, double a, double b) {
+        long first = Double.doubleToRawLongBits(a);
+        long second = Double.doubleToRawLongBits(b);
+        int slot = home(operation, first, second);
+        while (operations[slot] != EMPTY) {
+            if (operations[slot] == operation && firstKeys[slot] == first && secondKeys[slot] == second) {
+                referenced[slot] = true;
+                hits++;
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        
+        misses++;
+        double value = operation == POWER ? Calculator.power(a, b) : Calculator.squareRoot(a);
+        if (size == maxEntries) {
+            evict();
+            // Eviction may have shifted entries, so find the free slot again
+            slot = home(operation, first, second);
+            while (operations[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+        }
+        operations[slot] = operation;
+        firstKeys[slot] = first;
+        secondKeys[slot] = second;
+        values[slot] = value;
+        referenced[slot] = false;
+        size++;
+        return value;
+    }
+    
+    private void evict() {
+        while (true) {
+            int slot = hand;
+            hand = (hand + 1) & mask;
+            if (operations[slot] == EMPTY) {
+                continue;
+            }
+            if (referenced[slot]) {
+                referenced[slot] = false;
+                continue;
+            }
+            remove(slot);
+            return;
+        }
+    }
+    
+    // Delete by shifting later entries of the probe run back, so no tombstones are needed
+    private void remove(int slot) {
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (operations[next] != EMPTY) {
+            int home = home(operations[next], firstKeys[next], secondKeys[next]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                operations[hole] = operations[next];
+                firstKeys[hole] = firstKeys[next];
+                secondKeys[hole] = secondKeys[next];
+                values[hole] = values[next];
+                referenced[hole] = referenced[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        operations[hole] = EMPTY;
+        referenced[hole] = false;
+        size--;
+    }
+    
+    private int home(byte operation, long first, long second) {
+        long h = (first * 0x9E3779B97F4A7C15L + second) * 0xC2B2AE3D27D4EB4FL + operation;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Operator enum - the calculator's operations as a dispatch table that code can call
+ * directly, apart from any prompting or printing. Each constant overrides apply() with a
+ * call to the matching Calculator method, so errors are the same ArithmeticExceptions.
+ *
+ * A call site that always sees the same constant, e.g. Operator.ADD.apply(a, b), stays
+ * monomorphic and is inlined by the JIT. A site fed many different constants becomes a
+ * megamorphic virtual call; the calculator benchmarks compare the two with a switch.
+ */
+public enum Operator {
+    ADD(1, "+", "Addition (+)", "Enter first number: ", "Enter second number: ") {
+        public double apply(double a, double b) { return Calculator.add(a, b); }
+    },
+    SUBTRACT(2, "-", "Subtraction (-)", "Enter first number: ", "Enter second number: ") {
+        public double apply(double a, double b) { return Calculator.subtract(a, b); }
+    },
+    MULTIPLY(3, "*", "Multiplication (*)", "Enter first number: ", "Enter second number: ") {
+        public double apply(double a, double b) { return Calculator.multiply(a, b); }
+    },
+    DIVIDE(4, "/", "Division (/)", "Enter dividend: ", "Enter divisor: ") {
+        public double apply(double a, double b) { return Calculator.divide(a, b); }
+    },
+    MODULUS(5, "%", "Modulus (%)", "Enter first number: ", "Enter second number: ") {
+        public double apply(double a, double b) { return Calculator.modulus(a, b); }
+    },
+    POWER(6, "^", "Power (^)", "Enter base: ", "Enter exponent: ") {
+        public double apply(double a, double b) { return Calculator.power(a, b); }
+    },
+    // Unary: the second operand is ignored
+    SQUARE_ROOT(7, "√", "Square Root", "Enter number: ", null) {
+        public double apply(double a, double b) { return Calculator.squareRoot(a); }
+    };
+    
+    // Indexed by choice - 1 rather than ordinal, so forChoice does not depend on declaration order
+    private static final Operator[] BY_CHOICE = new Operator[values().length];
+    
+    static {
+        for (Operator operator : values()) {
+            BY_CHOICE[operator.choice - 1] = operator;
+        }
+    }
+    
+    private final int choice;
+    private final String symbol;
+    private final String label;
+    private final String firstPrompt;
+    private final String secondPrompt;
+    
+    Operator(int choice, String symbol, String label, String firstPrompt, String secondPrompt) {
+        this.choice = choice;
+        this.symbol = symbol;
+        this.label = label;
+        this.firstPrompt = firstPrompt;
+        this.secondPrompt = secondPrompt;
+    }
+    
+    public abstract double apply(double a, double b);
+    
+    // Unary operators take only their first operand
+    public double apply(double a) {
+        return apply(a, 0);
+    }
+    
+    public int getChoice() { return choice; }
+    public String getSymbol() { return symbol; }
+    public String getLabel() { return label; }
+    public String getFirstPrompt() { return firstPrompt; }
+    public String getSecondPrompt() { return secondPrompt; }
+    public boolean isUnary() { return secondPrompt == null; }
+    
+    // The operator for a menu choice, or null if the choice is not an operator
+    public static Operator forChoice(int choice) {
+        return choice >= 1 && choice <= BY_CHOICE.length ? BY_CHOICE[choice - 1] : null;
+    }
+    
+    public static Operator forSymbol(String symbol) {
+        for (Operator operator : BY_CHOICE) {
+            if (operator.symbol.equals(symbol) || (operator == SQUARE_ROOT && symbol.equals("sqrt"))) {
+                return operator;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operator: " + symbol);
+    }
+}
@@ -0,0 +1,365 @@
+import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * ParallelReductions class - sum, product, mean, variance and sum of powers over large
+ * inputs, either a double[] or a file of raw big-endian doubles (as DataOutputStream
+ * writes them) that is memory-mapped rather than read.
+ *
+ * Work is split on the common fork-join pool into leaves of LEAF_ELEMENTS values (128 KB,
+ * sized to stay in a core's L2 cache), with split points on multiples of eight doubles, one
+ * 64-byte cache line, so in a page-aligned mapping no two tasks touch the same line. Each
+ * task returns its partial result in a fresh object; nothing shared is written during the
+ * scan.
+ *
+ * Sums use Neumaier's compensated summation, in the leaves and when partial sums are
+ * combined, so the result does not depend on the order and count of the pieces as a naive
+ * sum would. Products keep a separate power-of-two scale, so long products neither
+ * overflow nor underflow before the final result does. Variance is the population
+ * variance, computed with the corrected two-pass algorithm.
+ *
+ * Usage: java ParallelReductions generate file count | file [exponent]
+ */
+public final class ParallelReductions {
+    static final int LEAF_ELEMENTS = 1 << 14;
+    private static final int DOUBLES_PER_LINE = 8;
+    // Mapped segments stay well under the 2 GB limit of a single MappedByteBuffer
+    private static final int SEGMENT_DOUBLES = 1 << 27;
+    
+    private static final int SUM = 0;
+    private static final int POWER = 1;
+    private static final int DEVIATION = 2;
+    
+    private ParallelReductions() { }
+    
+    public static double sum(double[] values) {
+        return additive(segments(values), SUM, 0).first();
+    }
+    
+    public static double product(double[] values) {
+        return product(segments(values));
+    }
+    
+    public static double mean(double[] values) {
+        return mean(segments(values));
+    }
+    
+    public static double variance(double[] values) {
+        return variance(segments(values));
+    }
+    
+    public static double sumOfPowers(double[] values, double exponent) {
+        return additive(segments(values), POWER, exponent).first();
+    }
+    
+    public static double sum(Path file) throws IOException {
+        return additive(map(file), SUM, 0).first();
+    }
+    
+    public static double product(Path file) throws IOException {
+        return product(map(file));
+    }
+    
+    public static double mean(Path file) throws IOException {
+        return mean(map(file));
+    }
+    
+    public static double variance(Path file) throws IOException {
+        return variance(map(file));
+    }
+    
+    public static double sumOfPowers(Path file, double exponent) throws IOException {
+        return additive(map(file), POWER, exponent).first();
+    }
+    
+    private static double mean(DoubleBuffer[] segments) {
+        long count = count(segments);
+        if (count == 0) {
+            throw new ArithmeticException("Mean of no values is undefined");
+        }
+        return additive(segments, SUM, 0).first() / count;
+    }
+    
+    // Second pass sums squared deviations; the first-order term corrects for rounding in the mean
+    private static double variance(DoubleBuffer[] segments) {
+        long count = count(segments);
+        double mean = mean(segments);
+        CompensatedSum deviations = additive(segments, DEVIATION, mean);
+        double correction = deviations.first();
+        return (deviations.second() - correction * correction / count) / count;
+    }
+    
+    private static CompensatedSum additive(DoubleBuffer[] segments, int kind, double parameter) {
+        CompensatedSum total = new CompensatedSum();
+        for (SumTask task : forkAll(segments, segment -> new SumTask(segment, 0, segment.limit(), kind, parameter))) {
+            total.add(task.join());
+        }
+        return total;
+    }
+    
+    private static double product(DoubleBuffer[] segments) {
+        ScaledProduct total = new ScaledProduct();
+        for (ProductTask task : forkAll(segments, segment -> new ProductTask(segment, 0, segment.limit()))) {
+            total.multiply(task.join());
+        }
+        return total.value();
+    }
+    
+    private interface TaskFactory<T extends RecursiveTask<?>> {
+        T create(DoubleBuffer segment);
+    }
+    
+    private static <T extends RecursiveTask<?>> List<T> forkAll(DoubleBuffer[] segments, TaskFactory<T> factory) {
+        List<T> tasks = new ArrayList<>(segments.length);
+        for (DoubleBuffer segment : segments) {
+            T task = factory.create(segment);
+            ForkJoinPool.commonPool().execute(task);
+            tasks.add(task);
+        }
+        return tasks;
+    }
+    
+    // Split [from, to) in half, rounded to a cache-line multiple of elements
+    private static int middle(int from, int to) {
+        int middle = from + ((to - from) >>> 1);
+        return Math.max(from + DOUBLES_PER_LINE, middle & -DOUBLES_PER_LINE);
+    }
+    
+    private static long count(DoubleBuffer[] segments) {
+        long count = 0;
+        for (DoubleBuffer segment : segments) {
+            count += segment.limit();
+        }
+        return count;
+    }
+    
+    private static DoubleBuffer[] segments(double[] values) {
+        return new DoubleBuffer[] { DoubleBuffer.wrap(values) };
+    }
+    
+    // Map a file of doubles in segments; a trailing partial value is ignored
+    private static DoubleBuffer[] map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long count = channel.size() / Double.BYTES;
+            DoubleBuffer[] segments = new DoubleBuffer[(int) ((count + SEGMENT_DOUBLES - 1) / SEGMENT_DOUBLES)];
+            for (int s = 0; s < segments.length; s++) {
+                long first = (long) s * SEGMENT_DOUBLES;
+                long doubles = Math.min(SEGMENT_DOUBLES, count - first);
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, first * Double.BYTES, doubles * Double.BYTES)
+                        .order(ByteOrder.BIG_ENDIAN).asDoubleBuffer();
+            }
+            return segments;
+        }
+    }
+    
+    /**
+     * Two Neumaier sums side by side; the deviation pass needs both at once
+     */
+    private static final class CompensatedSum {
+        double sum1;
+        double compensation1;
+        double sum2;
+        double compensation2;
+        
+        void add1(double value) {
+            double t = sum1 + value;
+            compensation1 += Math.abs(sum1) >= Math.abs(value) ? (sum1 - t) + value : (value - t) + sum1;
+            sum1 = t;
+        }
+        
+        void add2(double value) {
+            double t = sum2 + value;
+            compensation2 += Math.abs(sum2) >= Math.abs(value) ? (sum2 - t) + value : (value - t) + sum2;
+            sum2 = t;
+        }
+        
+        void add(CompensatedSum other) {
+            add1(other.sum1);
+            add2(other.sum2);
+            // A compensation is NaN only beside an infinite sum, which it must not turn into NaN
+            if (Double.isFinite(other.compensation1)) {
+                add1(other.compensation1);
+            }
+            if (Double.isFinite(other.compensation2)) {
+                add2(other.compensation2);
+            }
+        }
+        
+        // An infinite sum leaves NaN in its compensation, so it is returned as is
+        double first() { return Double.isFinite(sum1) ? sum1 + compensation1 : sum1; }
+        double second() { return Double.isFinite(sum2) ? sum2 + compensation2 : sum2; }
+    }
+    
+    private static final class SumTask extends RecursiveTask<CompensatedSum> {
+        private static final long serialVersionUID = 1L;
+        
+        private final DoubleBuffer values;
+        private final int from;
+        private final int to;
+        private final int kind;
+        private final double parameter;
+        
+        SumTask(DoubleBuffer values, int from, int to, int kind, double parameter) {
+            this.values = values;
+            this.from = from;
+            this.to = to;
+            this.kind = kind;
+            this.parameter = parameter;
+        }
+        
+        @Override
+        protected CompensatedSum compute() {
+            if (to - from <= LEAF_ELEMENTS) {
+                return leaf();
+            }
+            int middle = middle(from, to);
+            SumTask left = new SumTask(values, from, middle, kind, parameter);
+            left.fork();
+            CompensatedSum result = new SumTask(values, middle, to, kind, parameter).compute();
+            result.add(left.join());
+            return result;
+        }
+        
+        // One loop per kind, so none of them branches on the kind per element
+        private CompensatedSum leaf() {
+            CompensatedSum sum = new CompensatedSum();
+            if (kind == SUM) {
+                for (int i = from; i < to; i++) {
+                    sum.add1(values.get(i));
+                }
+            } else if (kind == POWER && parameter == 2) {
+                for (int i = from; i < to; i++) {
+                    double x = values.get(i);
+                    sum.add1(x * x);
+                }
+            } else if (kind == POWER) {
+                for (int i = from; i < to; i++) {
+                    sum.add1(Calculator.power(values.get(i), parameter));
+                }
+            } else {
+                for (int i = from; i < to; i++) {
+                    double deviation = values.get(i) - parameter;
+                    sum.add1(deviation);
+                    sum.add2(deviation * deviation);
+                }
+            }
+            return sum;
+        }
+    }
+    
+    /**
+     * A product held as mantissa * 2^scale, with the mantissa kept far from overflow and underflow
+     */
+    private static final class ScaledProduct {
+        private static final double HIGH = 0x1p500;
+        private static final double LOW = 0x1p-500;
+        
+        double mantissa = 1;
+        long scale;
+        
+        void multiply(double x) {
+            double next = mantissa * x;
+            if (Math.abs(next) < HIGH && Math.abs(next) > LOW) {
+                mantissa = next;
+            } else if (x == 0 || !Double.isFinite(x) || mantissa == 0 || !Double.isFinite(mantissa)) {
+                mantissa = next; // Zero, infinity or NaN decide the result on their own
+            } else {
+                if (Math.abs(x) < Double.MIN_NORMAL) {
+                    x *= 0x1p54;
+                    scale -= 54;
+                }
+                int exponent = Math.getExponent(x);
+                mantissa *= Math.scalb(x, -exponent);
+                scale += exponent;
+                normalize();
+            }
+        }
+        
+        void multiply(ScaledProduct other) {
+            scale += other.scale;
+            multiply(other.mantissa);
+        }
+        
+        private void normalize() {
+            int exponent = Math.getExponent(mantissa);
+            mantissa = Math.scalb(mantissa, -exponent);
+            scale += exponent;
+        }
+        
+        double value() {
+            if (mantissa == 0 || !Double.isFinite(mantissa)) {
+                return mantissa;
+            }
+            // scalb saturates to zero or infinity, so clamping only has to keep the scale an int
+            return Math.scalb(mantissa, (int) Math.max(-4000, Math.min(4000, scale)));
+        }
+    }
+    
+    private static final class ProductTask extends RecursiveTask<ScaledProduct> {
+        private static final long serialVersionUID = 1L;
+        
+        private final DoubleBuffer values;
+        private final int from;
+        private final int to;
+        
+        ProductTask(DoubleBuffer values, int from, int to) {
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected ScaledProduct compute() {
+            if (to - from <= LEAF_ELEMENTS) {
+                ScaledProduct product = new ScaledProduct();
+                for (int i = from; i < to; i++) {
+                    product.multiply(values.get(i));
+                }
+                return product;
+            }
+            int middle = middle(from, to);
+            ProductTask left = new ProductTask(values, from, middle);
+            left.fork();
+            ScaledProduct result = new ProductTask(values, middle, to).compute();
+            result.multiply(left.join());
+            return result;
+        }
+    }
+    
+    // Write count random doubles in [0, 1000) for trying the file reductions
+    private static void generate(Path file, long count) throws IOException {
+        Random random = new Random(count);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            for (long i = 0; i < count; i++) {
+                out.writeDouble(random.nextDouble() * 1000);
+            }
+        }
+    }
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("generate")) {
+            generate(Paths.get(args[1]), Long.parseLong(args[2]));
+            return;
+        }
+        if (args.length < 1) {
+            System.out.println("Usage: java ParallelReductions generate file count | file [exponent]");
+            return;
+        }
+        Path file = Paths.get(args[0]);
+        double exponent = args.length > 1 ? Double.parseDouble(args[1]) : 2;
+        long start = System.nanoTime();
+        System.out.println("Sum:             " + sum(file));
+        System.out.println("Product:         " + product(file));
+        System.out.println("Mean:            " + mean(file));
+        System.out.println("Variance:        " + variance(file));
+        System.out.println("Sum of powers ^" + exponent + ": " + sumOfPowers(file, exponent));
+        System.out.printf("%.2f s on %d threads%n", (System.nanoTime() - start) / 1e9,
+                ForkJoinPool.commonPool().getParallelism());
+    }
+}
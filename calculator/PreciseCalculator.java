@@ -0,0 +1,174 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * PreciseCalculator class - the Calculator operations in exact decimal arithmetic.
+ * While both operands are whole numbers that fit in a long, every operation stays on long
+ * arithmetic (addExact and friends); it promotes to BigDecimal only when a result would
+ * overflow or is fractional, and rounds BigDecimal results to the configured MathContext.
+ * Errors match Calculator: division or modulus by zero and the square root of a negative
+ * number throw ArithmeticException.
+ */
+public class PreciseCalculator {
+    private final MathContext mathContext;
+    
+    // 34 significant digits, IEEE 754 decimal128
+    public PreciseCalculator() {
+        this(MathContext.DECIMAL128);
+    }
+    
+    public PreciseCalculator(MathContext mathContext) {
+        this.mathContext = mathContext;
+    }
+    
+    public MathContext getMathContext() {
+        return mathContext;
+    }
+    
+    public PreciseNumber add(PreciseNumber a, PreciseNumber b) {
+        if (a.isLong() && b.isLong()) {
+            long x = a.longValue();
+            long y = b.longValue();
+            long sum = x + y;
+            // Overflow iff both operands have the sign the result lacks
+            if (((x ^ sum) & (y ^ sum)) >= 0) {
+                return PreciseNumber.of(sum);
+            }
+        }
+        return PreciseNumber.of(a.toBigDecimal().add(b.toBigDecimal(), mathContext));
+    }
+    
+    public PreciseNumber subtract(PreciseNumber a, PreciseNumber b) {
+        if (a.isLong() && b.isLong()) {
+            long x = a.longValue();
+            long y = b.longValue();
+            long difference = x - y;
+            if (((x ^ y) & (x ^ difference)) >= 0) {
+                return PreciseNumber.of(difference);
+            }
+        }
+        return PreciseNumber.of(a.toBigDecimal().subtract(b.toBigDecimal(), mathContext));
+    }
+    
+    public PreciseNumber multiply(PreciseNumber a, PreciseNumber b) {
+        if (a.isLong() && b.isLong()) {
+            long x = a.longValue();
+            long y = b.longValue();
+            long high = Math.multiplyHigh(x, y);
+            long product = x * y;
+            if ((high == 0 && product >= 0) || (high == -1 && product < 0)) {
+                return PreciseNumber.of(product);
+            }
+        }
+        return PreciseNumber.of(a.toBigDecimal().multiply(b.toBigDecimal(), mathContext));
+    }
+    
+    public PreciseNumber divide(PreciseNumber a, PreciseNumber b) {
+        if (b.signum() == 0) {
+            throw new ArithmeticException("Division by zero is not allowed");
+        }
+        if (a.isLong() && b.isLong()) {
+            long x = a.longValue();
+            long y = b.longValue();
+            if (x % y == 0 && !(x == Long.MIN_VALUE && y == -1)) {
+                return PreciseNumber.of(x / y);
+            }
+        }
+        return PreciseNumber.of(a.toBigDecimal().divide(b.toBigDecimal(), mathContext));
+    }
+    
+    public PreciseNumber modulus(PreciseNumber a, PreciseNumber b) {
+        if (b.signum() == 0) {
+            throw new ArithmeticException("Modulus by zero is not allowed");
+        }
+        if (a.isLong() && b.isLong()) {
+            // Same sign rule as double %: the result takes the dividend's sign
+            return PreciseNumber.of(b.longValue() == -1 ? 0 : a.longValue() % b.longValue());
+        }
+        return PreciseNumber.of(a.toBigDecimal().remainder(b.toBigDecimal(), mathContext));
+    }
+    
+    // Exact for whole exponents; a fractional exponent goes through double and is only that accurate
+    public PreciseNumber power(PreciseNumber base, PreciseNumber exponent) {
+        if (!exponent.isLong()) {
+            if (base.signum() < 0) {
+                // Same as Math.pow: a negative base to a fractional power is not a real number
+                throw new ArithmeticException("Fractional power of negative number is not allowed");
+            }
+            double result = Math.pow(base.doubleValue(), exponent.doubleValue());
+            if (Double.isInfinite(result)) {
+                throw new ArithmeticException("Result out of range");
+            }
+            return PreciseNumber.of(new BigDecimal(result, mathContext));
+        }
+        
+        long n = exponent.longValue();
+        if (n < 0) {
+            if (base.signum() == 0) {
+                throw new ArithmeticException("Division by zero is not allowed");
+            }
+            if (n == Long.MIN_VALUE) {
+                // -n overflows back to itself; split off one factor so the recursion sees MAX_VALUE
+                return divide(PreciseNumber.ONE, multiply(power(base, PreciseNumber.of(Long.MAX_VALUE)), base));
+            }
+            return divide(PreciseNumber.ONE, power(base, PreciseNumber.of(-n)));
+        }
+        if (base.isLong()) {
+            long result = longPower(base.longValue(), n);
+            if (result != Long.MIN_VALUE) {
+                return PreciseNumber.of(result);
+            }
+        }
+        if (n > 999_999_999) {
+            throw new ArithmeticException("Exponent too large: " + n);
+        }
+        return PreciseNumber.of(base.toBigDecimal().pow((int) n, mathContext));
+    }
+    
+    public PreciseNumber squareRoot(PreciseNumber a) {
+        if (a.signum() < 0) {
+            throw new ArithmeticException("Square root of negative number is not allowed");
+        }
+        if (a.isLong()) {
+            long x = a.longValue();
+            long root = (long) Math.sqrt((double) x);
+            // The double estimate can be one off near 2^53 and above; correct it
+            while (root > 0 && root > x / root) {
+                root--;
+            }
+            while ((root + 1) <= x / (root + 1)) {
+                root++;
+            }
+            if (root * root == x) {
+                return PreciseNumber.of(root);
+            }
+        }
+        return PreciseNumber.of(a.toBigDecimal().sqrt(mathContext));
+    }
+    
+    // base^n by repeated squaring; Long.MIN_VALUE if it may not fit (the BigDecimal path then decides)
+    private static long longPower(long base, long n) {
+        long result = 1;
+        long square = base;
+        while (true) {
+            if ((n & 1) != 0) {
+                long high = Math.multiplyHigh(result, square);
+                long product = result * square;
+                if (!((high == 0 && product >= 0) || (high == -1 && product < 0))) {
+                    return Long.MIN_VALUE;
+                }
+                result = product;
+            }
+            n >>>= 1;
+            if (n == 0) {
+                return result;
+            }
+            long high = Math.multiplyHigh(square, square);
+            long product = square * square;
+            if (high != 0 || product < 0) {
+                return Long.MIN_VALUE;
+            }
+            square = product;
+        }
+    }
+}
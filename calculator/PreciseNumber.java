@@ -0,0 +1,107 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * PreciseNumber class - an immutable exact number for PreciseCalculator. Whole numbers
+ * that fit in a long are held as a long and never touch BigDecimal; anything else (a
+ * fraction, or a value beyond the long range) is held as a BigDecimal. Results that come
+ * back to a whole long-sized value drop to the long form again.
+ */
+public final class PreciseNumber implements Comparable<PreciseNumber> {
+    public static final PreciseNumber ZERO = new PreciseNumber(0, null);
+    public static final PreciseNumber ONE = new PreciseNumber(1, null);
+    
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+    
+    private final long small;
+    private final BigDecimal big; // null when the value is the long in small
+    
+    private PreciseNumber(long small, BigDecimal big) {
+        this.small = small;
+        this.big = big;
+    }
+    
+    public static PreciseNumber of(long value) {
+        return new PreciseNumber(value, null);
+    }
+    
+    public static PreciseNumber of(BigDecimal value) {
+        if (value.scale() > 0 && value.signum() != 0 && value.precision() <= 38) {
+            // e.g. 2.5 * 2 = 5.0, which is whole again
+            BigDecimal stripped = value.stripTrailingZeros();
+            if (stripped.scale() <= 0) {
+                value = stripped;
+            }
+        }
+        if (value.scale() <= 0 || value.signum() == 0) {
+            // Whole number: use the long form if it fits
+            if (value.signum() == 0) {
+                return ZERO;
+            }
+            if (value.precision() - value.scale() <= 18) {
+                return new PreciseNumber(value.longValueExact(), null);
+            }
+            BigInteger whole = value.toBigIntegerExact();
+            if (whole.compareTo(LONG_MIN) >= 0 && whole.compareTo(LONG_MAX) <= 0) {
+                return new PreciseNumber(whole.longValue(), null);
+            }
+        }
+        return new PreciseNumber(0, value);
+    }
+    
+    // Parse a decimal such as "12", "-0.125" or "1e30"; throws NumberFormatException
+    public static PreciseNumber parse(String text) {
+        String trimmed = text.trim();
+        if (trimmed.length() <= 18 && trimmed.indexOf('.') < 0 && trimmed.indexOf('e') < 0 && trimmed.indexOf('E') < 0) {
+            return of(Long.parseLong(trimmed));
+        }
+        return of(new BigDecimal(trimmed));
+    }
+    
+    // True when the value is held as a long, i.e. arithmetic on it takes the fast path
+    public boolean isLong() {
+        return big == null;
+    }
+    
+    // The long value; only meaningful when isLong()
+    long longValue() {
+        return small;
+    }
+    
+    public BigDecimal toBigDecimal() {
+        return big != null ? big : BigDecimal.valueOf(small);
+    }
+    
+    public double doubleValue() {
+        return big != null ? big.doubleValue() : (double) small;
+    }
+    
+    public int signum() {
+        return big != null ? big.signum() : Long.signum(small);
+    }
+    
+    @Override
+    public int compareTo(PreciseNumber other) {
+        if (big == null && other.big == null) {
+            return Long.compare(small, other.small);
+        }
+        return toBigDecimal().compareTo(other.toBigDecimal());
+    }
+    
+    // Numeric equality, so 2 equals 2.00
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof PreciseNumber && compareTo((PreciseNumber) other) == 0;
+    }
+    
+    @Override
+    public int hashCode() {
+        return big == null ? Long.hashCode(small) : big.stripTrailingZeros().hashCode();
+    }
+    
+    @Override
+    public String toString() {
+        return big != null ? big.toPlainString() : Long.toString(small);
+    }
+}
@@ -0,0 +1,357 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Random;
+
+/**
+ * SessionHistory class - an append-only binary log of every calculation, with the most
+ * recent results kept in memory so they can be recalled as ans (the last result) or $n
+ * (the n-th result, counting from 1).
+ *
+ * Records are fixed-size, so result n lives at a known offset and results older than the
+ * in-memory window are read back from the file with one positional read. A record torn by
+ * a crash is cut off when the log is reopened.
+ *
+ * replay() re-evaluates a whole log against an Engine, by default the current Operator
+ * implementations, and reports every result that no longer matches along with the
+ * throughput. Use it to check a new engine version against recorded sessions.
+ *
+ * Record layout: byte operator code (Operator.getChoice(), or EXPRESSION), byte status,
+ * double first operand, double second operand, double result. The code is the menu number
+ * rather than the enum ordinal, so reordering Operator does not change what old logs mean.
+ *
+ * Usage: java SessionHistory generate file count | replay file [--memo]
+ */
+public class SessionHistory implements Closeable {
+    private static final int MAGIC = 0x43414C32; // "CAL2"; "CALH" logs stored ordinals
+    private static final int HEADER_BYTES = 4;
+    private static final int RECORD_BYTES = 1 + 1 + 8 + 8 + 8;
+    private static final byte EXPRESSION = -1;
+    private static final byte STATUS_OK = 0;
+    private static final byte STATUS_ERROR = 1;
+    private static final int RECENT_RESULTS = 4096;
+    
+    /**
+     * The implementation being checked during replay
+     */
+    public interface Engine {
+        double apply(Operator operator, double a, double b);
+    }
+    
+    private final FileChannel channel;
+    private final ByteBuffer pending = ByteBuffer.allocate(1024 * RECORD_BYTES);
+    private final double[] recentResults = new double[RECENT_RESULTS];
+    private final boolean[] recentErrors = new boolean[RECENT_RESULTS];
+    private long size;
+    private long flushedSize;
+    
+    private SessionHistory(FileChannel channel, long size) {
+        this.channel = channel;
+        this.size = size;
+        this.flushedSize = size;
+    }
+    
+    // Open a log, creating it if needed, and load its most recent results
+    public static SessionHistory open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).flip();
+                channel.truncate(0).write(header, 0);
+            }
+            checkHeader(channel, file);
+            
+            long size = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+            channel.truncate(offsetOf(size)); // Drop a torn last record
+            SessionHistory history = new SessionHistory(channel, size);
+            history.loadRecent();
+            channel.position(offsetOf(size));
+            return history;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    // Append a calculation; returns its number for $n recall
+    public long record(Operator operator, double a, double b, double result) throws IOException {
+        return append((byte) operator.getChoice(), STATUS_OK, a, b, result);
+    }
+    
+    // Append a calculation that threw, e.g. a division by zero
+    public long recordError(Operator operator, double a, double b) throws IOException {
+        return append((byte) operator.getChoice(), STATUS_ERROR, a, b, Double.NaN);
+    }
+    
+    // Append the result of an expression; replay has no operands to check it against
+    public long recordExpression(double result) throws IOException {
+        return append(EXPRESSION, STATUS_OK, 0, 0, result);
+    }
+    
+    // The last successful result
+    public double ans() throws IOException {
+        for (long n = size; n >= 1; n--) {
+            if (!isError(n)) {
+                return result(n);
+            }
+        }
+        throw new IllegalArgumentException("No previous result");
+    }
+    
+    // Result number n, counting from 1
+    public double result(long n) throws IOException {
+        if (n < 1 || n > size) {
+            throw new IllegalArgumentException("No result $" + n + " (history has " + size + ")");
+        }
+        if (isError(n)) {
+            throw new IllegalArgumentException("$" + n + " has no result; it was an error");
+        }
+        if (n > size - RECENT_RESULTS) {
+            return recentResults[slot(n)];
+        }
+        return readRecord(n).getDouble(2 + 8 + 8);
+    }
+    
+    // Resolve an operand typed by the user: a number, ans or $n
+    public double resolve(String token) throws IOException {
+        if (token.equalsIgnoreCase("ans")) {
+            return ans();
+        }
+        if (token.startsWith("$")) {
+            try {
+                return result(Long.parseLong(token.substring(1)));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid history reference: " + token);
+            }
+        }
+        try {
+            return Double.parseDouble(token);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + token);
+        }
+    }
+    
+    public long size() { return size; }
+    
+    // Write buffered records to the file
+    public void flush() throws IOException {
+        pending.flip();
+        while (pending.hasRemaining()) {
+            channel.write(pending);
+        }
+        pending.clear();
+        flushedSize = size;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+    
+    private long append(byte operator, byte status, double a, double b, double result) throws IOException {
+        if (pending.remaining() < RECORD_BYTES) {
+            flush();
+        }
+        pending.put(operator).put(status).putDouble(a).putDouble(b).putDouble(result);
+        size++;
+        recentResults[slot(size)] = result;
+        recentErrors[slot(size)] = status == STATUS_ERROR;
+        return size;
+    }
+    
+    private boolean isError(long n) throws IOException {
+        if (n > size - RECENT_RESULTS) {
+            return recentErrors[slot(n)];
+        }
+        return readRecord(n).get(1) == STATUS_ERROR;
+    }
+    
+    private ByteBuffer readRecord(long n) throws IOException {
+        if (n > flushedSize) {
+            flush();
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        long position = offsetOf(n - 1);
+        while (record.hasRemaining()) {
+            if (channel.read(record, position + record.position()) < 0) {
+                throw new IOException("History file ends before record " + n);
+            }
+        }
+        return record.flip();
+    }
+    
+    private void loadRecent() throws IOException {
+        long first = Math.max(1, size - RECENT_RESULTS + 1);
+        ByteBuffer buffer = ByteBuffer.allocate((int) (size - first + 1) * RECORD_BYTES);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offsetOf(first - 1) + buffer.position()) < 0) {
+                throw new IOException("History file ends early");
+            }
+        }
+        buffer.flip();
+        for (long n = first; n <= size; n++) {
+            int base = (int) (n - first) * RECORD_BYTES;
+            recentErrors[slot(n)] = buffer.get(base + 1) == STATUS_ERROR;
+            recentResults[slot(n)] = buffer.getDouble(base + 2 + 8 + 8);
+        }
+    }
+    
+    private static int slot(long n) {
+        return (int) (n % RECENT_RESULTS);
+    }
+    
+    private static long offsetOf(long records) {
+        return HEADER_BYTES + records * RECORD_BYTES;
+    }
+    
+    private static void checkHeader(FileChannel channel, Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                break;
+            }
+        }
+        if (header.flip().remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+            throw new IOException("Not a calculator history file: " + file);
+        }
+    }
+    
+    /**
+     * Outcome of a replay
+     */
+    public static final class ReplayResult {
+        private final long records;
+        private final long expressions;
+        private final long mismatches;
+        private final long firstMismatch;
+        private final long nanos;
+        
+        ReplayResult(long records, long expressions, long mismatches, long firstMismatch, long nanos) {
+            this.records = records;
+            this.expressions = expressions;
+            this.mismatches = mismatches;
+            this.firstMismatch = firstMismatch;
+            this.nanos = nanos;
+        }
+        
+        public long getRecords() { return records; }
+        public long getExpressions() { return expressions; }
+        public long getMismatches() { return mismatches; }
+        public long getFirstMismatch() { return firstMismatch; }
+        public long getNanos() { return nanos; }
+        
+        public double getRecordsPerSecond() {
+            return nanos == 0 ? 0 : records * 1e9 / nanos;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%,d records (%,d expressions skipped), %,d mismatches%s, %.2f s, %,.0f records/s",
+                    records, expressions, mismatches, firstMismatch > 0 ? " (first at $" + firstMismatch + ")" : "",
+                    nanos / 1e9, getRecordsPerSecond());
+        }
+    }
+    
+    // Re-evaluate every record of a log with engine; a result matches if it has the same bits, or both threw
+    public static ReplayResult replay(Path file, Engine engine) throws IOException {
+        long records = 0;
+        long expressions = 0;
+        long mismatches = 0;
+        long firstMismatch = 0;
+        long start = System.nanoTime();
+        
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            checkHeader(channel, file);
+            channel.position(HEADER_BYTES);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(8192 * RECORD_BYTES);
+            while (channel.read(buffer) >= 0 || buffer.position() > 0) {
+                buffer.flip();
+                if (buffer.remaining() < RECORD_BYTES) {
+                    break; // Only a torn record is left
+                }
+                while (buffer.remaining() >= RECORD_BYTES) {
+                    byte operator = buffer.get();
+                    byte status = buffer.get();
+                    double a = buffer.getDouble();
+                    double b = buffer.getDouble();
+                    double expected = buffer.getDouble();
+                    records++;
+                    if (operator == EXPRESSION) {
+                        expressions++;
+                        continue;
+                    }
+                    
+                    Operator decoded = Operator.forChoice(operator);
+                    if (decoded == null) {
+                        throw new IOException("Unknown operator code " + operator + " in record " + records
+                                + " of " + file);
+                    }
+                    boolean matches;
+                    try {
+                        double actual = engine.apply(decoded, a, b);
+                        matches = status == STATUS_OK
+                                && Double.doubleToLongBits(actual) == Double.doubleToLongBits(expected);
+                    } catch (ArithmeticException e) {
+                        matches = status == STATUS_ERROR;
+                    }
+                    if (!matches) {
+                        mismatches++;
+                        if (firstMismatch == 0) {
+                            firstMismatch = records;
+                        }
+                    }
+                }
+                buffer.compact();
+            }
+        }
+        return new ReplayResult(records, expressions, mismatches, firstMismatch, System.nanoTime() - start);
+    }
+    
+    public static ReplayResult replay(Path file) throws IOException {
+        return replay(file, Operator::apply);
+    }
+    
+    // Record count random calculations, about 1% of them errors, for replay testing
+    private static void generate(Path file, long count) throws IOException {
+        Operator[] operators = Operator.values();
+        Random random = new Random(count);
+        try (SessionHistory history = open(file)) {
+            for (long i = 0; i < count; i++) {
+                Operator operator = operators[random.nextInt(operators.length)];
+                double a = random.nextInt(100) == 0 ? -random.nextDouble() : random.nextDouble() * 1000;
+                double b = random.nextInt(100) == 0 ? 0 : random.nextDouble() * 10;
+                try {
+                    history.record(operator, a, b, operator.apply(a, b));
+                } catch (ArithmeticException e) {
+                    history.recordError(operator, a, b);
+                }
+            }
+        }
+    }
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("generate")) {
+            long start = System.nanoTime();
+            generate(Paths.get(args[1]), Long.parseLong(args[2]));
+            System.out.printf("Recorded %,d calculations in %.2f s%n", Long.parseLong(args[2]),
+                    (System.nanoTime() - start) / 1e9);
+        } else if (args.length >= 2 && args[0].equals("replay")) {
+            Engine engine = Operator::apply;
+            if (args.length > 2 && args[2].equals("--memo")) {
+                MemoCache cache = new MemoCache(4096);
+                engine = (operator, a, b) -> operator == Operator.POWER ? cache.power(a, b)
+                        : operator == Operator.SQUARE_ROOT ? cache.squareRoot(a) : operator.apply(a, b);
+            }
+            System.out.println(replay(Paths.get(args[1]), engine));
+        } else {
+            System.out.println("Usage: java SessionHistory generate file count | replay file [--memo]");
+        }
+    }
+}
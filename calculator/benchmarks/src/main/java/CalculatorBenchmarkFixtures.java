@@ -0,0 +1,77 @@
+import benchmarks.CalculatorFixtures;
+
+/**
+ * CalculatorBenchmarkFixtures - the default-package side of benchmarks.CalculatorFixtures.
+ * It lives in the benchmark module, next to the JMH code, so the calculator sources need
+ * nothing extra.
+ */
+public class CalculatorBenchmarkFixtures implements CalculatorFixtures {
+    public double power(double base, double exponent) {
+        return Calculator.power(base, exponent);
+    }
+    
+    public double squareRoot(double number) {
+        return Calculator.squareRoot(number);
+    }
+    
+    public double add(double a, double b) {
+        return Calculator.add(a, b);
+    }
+    
+    public double applyAdd(double a, double b) {
+        return Operator.ADD.apply(a, b);
+    }
+    
+    public double applyOperator(int choice, double a, double b) {
+        return Operator.forChoice(choice).apply(a, b);
+    }
+    
+    // The dispatch performOperation did before Operator, minus the console I/O
+    public double switchDispatch(int choice, double a, double b) {
+        switch (choice) {
+            case 1: return Calculator.add(a, b);
+            case 2: return Calculator.subtract(a, b);
+            case 3: return Calculator.multiply(a, b);
+            case 4: return Calculator.divide(a, b);
+            case 5: return Calculator.modulus(a, b);
+            case 6: return Calculator.power(a, b);
+            case 7: return Calculator.squareRoot(a);
+            default: throw new IllegalArgumentException("Invalid choice: " + choice);
+        }
+    }
+    
+    public double parallelSum(double[] values) {
+        return ParallelReductions.sum(values);
+    }
+    
+    public double parallelVariance(double[] values) {
+        return ParallelReductions.variance(values);
+    }
+    
+    public int batchMultiply(double[] a, double[] b, double[] out) {
+        return BatchCalculator.multiply(a, b, out, null);
+    }
+    
+    public int batchDivide(double[] a, double[] b, double[] out) {
+        return BatchCalculator.divide(a, b, out, null);
+    }
+    
+    public int batchSquareRoot(double[] a, double[] out) {
+        return BatchCalculator.squareRoot(a, out, null);
+    }
+    
+    public boolean isBatchVectorized() {
+        return BatchCalculator.isVectorized();
+    }
+    
+    public Memo newMemo(int maxEntries) {
+        MemoCache cache = new MemoCache(maxEntries);
+        return new Memo() {
+            public double power(double base, double exponent) { return cache.power(base, exponent); }
+            public double squareRoot(double number) { return cache.squareRoot(number); }
+            public long getHits() { return cache.getHits(); }
+            public long getMisses() { return cache.getMisses(); }
+            public double getHitRatio() { return cache.getHitRatio(); }
+        };
+    }
+}
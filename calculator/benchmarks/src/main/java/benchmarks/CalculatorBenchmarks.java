@@ -0,0 +1,267 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * CalculatorBenchmarks - JMH benchmarks for the calculator's compute paths.
+ *
+ * The power and squareRoot benchmarks draw their arguments from pre-generated arrays with a
+ * fixed number of distinct values (the "distinct" parameter), which sets how often a memo
+ * cache can hit; the cached variants start every iteration with a cold cache and print the
+ * hit ratio it reached. The dispatch benchmarks compare Operator against a switch on the
+ * menu choice, at call sites that see one operator or all of them. The reduce benchmarks
+ * sum a whole column naively and with the compensated fork-join reduction. The batch
+ * benchmarks run BatchCalculator over a whole column, with its plain loops and, in a fork
+ * started with the Vector API switch on, with VectorKernels.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculatorBenchmarks {
+    static final int ARGUMENTS = 1 << 18;
+    static final int CACHE_ENTRIES = 4096;
+    static final int BATCH = 1 << 16;
+    
+    static final CalculatorFixtures CALCULATOR = CalculatorFixtures.load();
+    
+    /**
+     * Arguments for power and squareRoot, and a memo cache rebuilt every iteration
+     */
+    @State(Scope.Thread)
+    public static class Repeated {
+        @Param({ "64", "4096", "65536" })
+        int distinct;
+        
+        double[] bases;
+        double[] exponents;
+        double[] squares;
+        CalculatorFixtures.Memo cache;
+        int next;
+        
+        @Setup(Level.Trial)
+        public void generate() {
+            // Separate seeds, so the arrays do not repeat in step
+            bases = arguments(1, distinct, 1, 100);
+            exponents = arguments(2, distinct, 0, 4);
+            squares = arguments(3, distinct, 0, 1e6);
+        }
+        
+        @Setup(Level.Iteration)
+        public void clearCache() {
+            cache = CALCULATOR.newMemo(CACHE_ENTRIES);
+        }
+        
+        @TearDown(Level.Iteration)
+        public void reportCache() {
+            if (cache.getHits() + cache.getMisses() > 0) {
+                System.out.printf("hit ratio %.1f%%%n", 100 * cache.getHitRatio());
+            }
+        }
+        
+        int next() {
+            int i = next;
+            next = (i + 1) & (ARGUMENTS - 1);
+            return i;
+        }
+    }
+    
+    /**
+     * Operand pairs and a random menu choice for each
+     */
+    @State(Scope.Thread)
+    public static class Operands {
+        int[] choices;
+        double[] left;
+        double[] right;
+        int next;
+        
+        @Setup(Level.Trial)
+        public void generate() {
+            Random random = new Random(4);
+            choices = new int[ARGUMENTS];
+            for (int i = 0; i < ARGUMENTS; i++) {
+                choices[i] = 1 + random.nextInt(7);
+            }
+            left = arguments(5, ARGUMENTS, 0, 100);
+            right = arguments(6, ARGUMENTS, 1, 100);
+        }
+        
+        int next() {
+            int i = next;
+            next = (i + 1) & (ARGUMENTS - 1);
+            return i;
+        }
+    }
+    
+    /**
+     * One column of ARGUMENTS values in [-1, 1)
+     */
+    @State(Scope.Benchmark)
+    public static class Column {
+        double[] values;
+        
+        @Setup(Level.Trial)
+        public void generate() {
+            values = arguments(7, ARGUMENTS, -1, 1);
+        }
+    }
+    
+    /**
+     * Operand columns for BatchCalculator, with a few zero divisors and negative square roots
+     */
+    @State(Scope.Thread)
+    public static class Batch {
+        double[] a;
+        double[] b;
+        double[] out;
+        
+        @Setup(Level.Trial)
+        public void generate() {
+            Random random = new Random(8);
+            a = new double[BATCH];
+            b = new double[BATCH];
+            out = new double[BATCH];
+            for (int i = 0; i < BATCH; i++) {
+                a[i] = random.nextInt(1000) == 0 ? -1 : 1e6 * random.nextDouble();
+                b[i] = random.nextInt(1000) == 0 ? 0 : 1 + random.nextDouble();
+            }
+        }
+    }
+    
+    /**
+     * Batch, checked to be running through VectorKernels
+     */
+    @State(Scope.Thread)
+    public static class VectorBatch extends Batch {
+        @Setup(Level.Trial)
+        public void checkVectorized() {
+            if (!CALCULATOR.isBatchVectorized()) {
+                throw new IllegalStateException("BatchCalculator did not load VectorKernels");
+            }
+        }
+    }
+    
+    @Benchmark
+    public double power(Repeated state) {
+        int i = state.next();
+        return CALCULATOR.power(state.bases[i], state.exponents[i]);
+    }
+    
+    @Benchmark
+    public double powerCached(Repeated state) {
+        int i = state.next();
+        return state.cache.power(state.bases[i], state.exponents[i]);
+    }
+    
+    @Benchmark
+    public double squareRoot(Repeated state) {
+        return CALCULATOR.squareRoot(state.squares[state.next()]);
+    }
+    
+    @Benchmark
+    public double squareRootCached(Repeated state) {
+        return state.cache.squareRoot(state.squares[state.next()]);
+    }
+    
+    @Benchmark
+    public double dispatchDirectSingle(Operands state) {
+        int i = state.next();
+        return CALCULATOR.add(state.left[i], state.right[i]);
+    }
+    
+    @Benchmark
+    public double dispatchOperatorSingle(Operands state) {
+        int i = state.next();
+        return CALCULATOR.applyAdd(state.left[i], state.right[i]);
+    }
+    
+    @Benchmark
+    public double dispatchSwitchMixed(Operands state) {
+        int i = state.next();
+        return CALCULATOR.switchDispatch(state.choices[i], state.left[i], state.right[i]);
+    }
+    
+    @Benchmark
+    public double dispatchOperatorMixed(Operands state) {
+        int i = state.next();
+        return CALCULATOR.applyOperator(state.choices[i], state.left[i], state.right[i]);
+    }
+    
+    // The switch plus the formatting performOperation does around it
+    @Benchmark
+    public double dispatchSwitchFormattedMixed(Operands state) {
+        int i = state.next();
+        double result = CALCULATOR.switchDispatch(state.choices[i], state.left[i], state.right[i]);
+        return result + String.format("%.2f ? %.2f = %.2f", state.left[i], state.right[i], result).length();
+    }
+    
+    @Benchmark
+    public double reduceSumNaive(Column column) {
+        double sum = 0;
+        for (double value : column.values) {
+            sum += value;
+        }
+        return sum;
+    }
+    
+    @Benchmark
+    public double reduceSumParallel(Column column) {
+        return CALCULATOR.parallelSum(column.values);
+    }
+    
+    @Benchmark
+    public double reduceVarianceParallel(Column column) {
+        return CALCULATOR.parallelVariance(column.values);
+    }
+    
+    @Benchmark
+    public int batchMultiply(Batch batch) {
+        return CALCULATOR.batchMultiply(batch.a, batch.b, batch.out);
+    }
+    
+    @Benchmark
+    @Fork(jvmArgsAppend = { "--add-modules=jdk.incubator.vector", "-Dcalculator.batch.vector=true" })
+    public int batchMultiplyVector(VectorBatch batch) {
+        return CALCULATOR.batchMultiply(batch.a, batch.b, batch.out);
+    }
+    
+    @Benchmark
+    public int batchDivide(Batch batch) {
+        return CALCULATOR.batchDivide(batch.a, batch.b, batch.out);
+    }
+    
+    @Benchmark
+    @Fork(jvmArgsAppend = { "--add-modules=jdk.incubator.vector", "-Dcalculator.batch.vector=true" })
+    public int batchDivideVector(VectorBatch batch) {
+        return CALCULATOR.batchDivide(batch.a, batch.b, batch.out);
+    }
+    
+    @Benchmark
+    public int batchSquareRoot(Batch batch) {
+        return CALCULATOR.batchSquareRoot(batch.a, batch.out);
+    }
+    
+    @Benchmark
+    @Fork(jvmArgsAppend = { "--add-modules=jdk.incubator.vector", "-Dcalculator.batch.vector=true" })
+    public int batchSquareRootVector(VectorBatch batch) {
+        return CALCULATOR.batchSquareRoot(batch.a, batch.out);
+    }
+    
+    // ARGUMENTS values in [low, high) drawn from a pool of the given number of distinct values
+    static double[] arguments(long seed, int distinct, double low, double high) {
+        Random random = new Random(seed);
+        double[] pool = new double[distinct];
+        for (int i = 0; i < distinct; i++) {
+            pool[i] = low + (high - low) * random.nextDouble();
+        }
+        double[] values = new double[ARGUMENTS];
+        for (int i = 0; i < ARGUMENTS; i++) {
+            values[i] = pool[random.nextInt(distinct)];
+        }
+        return values;
+    }
+}
@@ -0,0 +1,51 @@
+package benchmarks;
+
+/**
+ * CalculatorFixtures - the calculator calls the benchmarks measure. JMH will not generate
+ * benchmarks in the default package, and code in a named package cannot refer to the
+ * default-package calculator classes, so the implementation, CalculatorBenchmarkFixtures,
+ * sits in the default package and is looked up by name.
+ */
+public interface CalculatorFixtures {
+    double power(double base, double exponent);
+    double squareRoot(double number);
+    
+    // Calculator.add called directly, and through Operator.ADD
+    double add(double a, double b);
+    double applyAdd(double a, double b);
+    
+    // The operator for a menu choice, dispatched through Operator or through a switch on the choice
+    double applyOperator(int choice, double a, double b);
+    double switchDispatch(int choice, double a, double b);
+    
+    double parallelSum(double[] values);
+    double parallelVariance(double[] values);
+    
+    // BatchCalculator over whole arrays; each returns the number of failed elements
+    int batchMultiply(double[] a, double[] b, double[] out);
+    int batchDivide(double[] a, double[] b, double[] out);
+    int batchSquareRoot(double[] a, double[] out);
+    boolean isBatchVectorized();
+    
+    Memo newMemo(int maxEntries);
+    
+    /**
+     * A MemoCache in front of power and squareRoot
+     */
+    interface Memo {
+        double power(double base, double exponent);
+        double squareRoot(double number);
+        long getHits();
+        long getMisses();
+        double getHitRatio();
+    }
+    
+    static CalculatorFixtures load() {
+        try {
+            return (CalculatorFixtures) Class.forName("CalculatorBenchmarkFixtures").getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("CalculatorBenchmarkFixtures is not on the class path", e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorKernels class - BatchCalculator's element-wise loops written with the incubating
+ * Vector API, one preferred-width vector of doubles per step and a scalar loop for the tail.
+ * BatchCalculator loads it by name when run with -Dcalculator.batch.vector=true.
+ *
+ * Compile and run with --add-modules jdk.incubator.vector, e.g. from the calculator directory:
+ *   javac --add-modules jdk.incubator.vector *.java vector/*.java
+ *   java --add-modules jdk.incubator.vector -Dcalculator.batch.vector=true ...
+ */
+public final class VectorKernels implements BatchCalculator.Kernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    
+    public void add(double[] a, double[] b, double[] out, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).add(DoubleVector.fromArray(SPECIES, b, i)).intoArray(out, i);
+        }
+        for (; i < n; i++) {
+            out[i] = a[i] + b[i];
+        }
+    }
+    
+    public void subtract(double[] a, double[] b, double[] out, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).sub(DoubleVector.fromArray(SPECIES, b, i)).intoArray(out, i);
+        }
+        for (; i < n; i++) {
+            out[i] = a[i] - b[i];
+        }
+    }
+    
+    public void multiply(double[] a, double[] b, double[] out, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).mul(DoubleVector.fromArray(SPECIES, b, i)).intoArray(out, i);
+        }
+        for (; i < n; i++) {
+            out[i] = a[i] * b[i];
+        }
+    }
+    
+    // Zero divisors give infinities or NaN here; BatchCalculator replaces them with NaN afterwards
+    public void divide(double[] a, double[] b, double[] out, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).div(DoubleVector.fromArray(SPECIES, b, i)).intoArray(out, i);
+        }
+        for (; i < n; i++) {
+            out[i] = a[i] / b[i];
+        }
+    }
+    
+    public void square(double[] a, double[] out, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            DoubleVector v = DoubleVector.fromArray(SPECIES, a, i);
+            v.mul(v).intoArray(out, i);
+        }
+        for (; i < n; i++) {
+            out[i] = a[i] * a[i];
+        }
+    }
+    
+    // Negative inputs give NaN, as Math.sqrt does
+    public void squareRoot(double[] a, double[] out, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).lanewise(VectorOperators.SQRT).intoArray(out, i);
+        }
+        for (; i < n; i++) {
+            out[i] = Math.sqrt(a[i]);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * StudentFileLoader class - reads a students.txt snapshot in parallel, parsing records
+ * straight from bytes instead of through readLine(), split(",") and parseInt/parseDouble.
+ *
+ * The file is cut into one byte range per thread, each boundary moved forward to just
+ * after a newline, and every thread reads its range through FileChannel positional reads
+ * into its own buffer. IDs, ages and GPAs are parsed from the bytes with no intermediate
+ * String; only the name and email, which a Student keeps, become Strings, and course
+ * names, of which there are few, are shared through a small per-thread cache. Ranges are
+ * joined in file order, so the result is the same as reading line by line.
+ *
+ * The channel is read rather than memory-mapped so the snapshot can be replaced by an
+ * atomic move while the program runs, which a live mapping prevents on some platforms.
+ *
+ * Usage: java StudentFileLoader generate file count | file
+ */
+public final class StudentFileLoader {
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final int FIELDS = 6;
+    
+    private StudentFileLoader() { }
+    
+    public static List<Student> load(Path file) throws IOException {
+        return load(file, Runtime.getRuntime().availableProcessors());
+    }
+    
+    // Students in file order; throws IOException naming the byte offset of the first malformed line
+    public static List<Student> load(Path file, int parallelism) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int ranges = (int) Math.max(1, Math.min(parallelism, size / BUFFER_BYTES + 1));
+            long[] bounds = new long[ranges + 1];
+            bounds[ranges] = size;
+            for (int r = 1; r < ranges; r++) {
+                bounds[r] = Math.max(bounds[r - 1], lineStartAtOrAfter(channel, size * r / ranges, size));
+            }
+            
+            ExecutorService pool = Executors.newFixedThreadPool(ranges, task -> {
+                Thread thread = new Thread(task, "student-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Future<List<Student>>> parts = new ArrayList<>(ranges);
+                for (int r = 0; r < ranges; r++) {
+                    long start = bounds[r];
+                    long end = bounds[r + 1];
+                    parts.add(pool.submit(() -> new RangeParser(channel, start, end).parse()));
+                }
+                List<Student> students = new ArrayList<>();
+                for (Future<List<Student>> part : parts) {
+                    students.addAll(part.get());
+                }
+                return students;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while loading " + file);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Could not load " + file, e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+    
+    // Offset just after the first newline at or after position - 1, so a range never starts mid-line
+    private static long lineStartAtOrAfter(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long offset = position - 1;
+        while (offset < size) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return size;
+    }
+    
+    /**
+     * Parses the lines of one byte range; each instance is used by a single thread
+     */
+    private static final class RangeParser {
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final int[] fieldStarts = new int[FIELDS + 1];
+        private final String[] courseCache = new String[256];
+        private final byte[][] courseBytes = new byte[256][];
+        private byte[] buffer = new byte[BUFFER_BYTES];
+        
+        RangeParser(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+        
+        List<Student> parse() throws IOException {
+            List<Student> students = new ArrayList<>();
+            long position = start;
+            int filled = 0;
+            boolean endOfFile = false;
+            while (position < end || filled > 0) {
+                // Top up the buffer after the partial line carried over from the last read
+                int want = (int) Math.min(buffer.length - filled, end - position);
+                ByteBuffer target = ByteBuffer.wrap(buffer, filled, want);
+                while (target.hasRemaining()) {
+                    int read = channel.read(target, position + target.position() - filled);
+                    if (read < 0) {
+                        endOfFile = true; // The file shrank while being read
+                        break;
+                    }
+                }
+                int added = target.position() - filled;
+                position += added;
+                filled += added;
+                boolean last = position >= end || endOfFile;
+                
+                int lineStart = 0;
+                for (int i = 0; i < filled; i++) {
+                    if (buffer[i] == '\n') {
+                        parseLine(lineStart, i, position - filled, students);
+                        lineStart = i + 1;
+                    }
+                }
+                if (last) {
+                    if (lineStart < filled) {
+                        parseLine(lineStart, filled, position - filled, students); // No newline at end of file
+                    }
+                    break;
+                }
+                
+                System.arraycopy(buffer, lineStart, buffer, 0, filled - lineStart);
+                filled -= lineStart;
+                if (filled == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2); // A line longer than the buffer
+                }
+            }
+            return students;
+        }
+        
+        // Parse buffer[from, to) as one record; bufferOffset is the file offset of buffer[0], for errors
+        private void parseLine(int from, int to, long bufferOffset, List<Student> students) throws IOException {
+            if (to > from && buffer[to - 1] == '\r') {
+                to--;
+            }
+            if (to == from) {
+                return;
+            }
+            
+            // Same fields as split(","): the first six, anything after a sixth comma ignored
+            int fields = 0;
+            fieldStarts[fields++] = from;
+            for (int i = from; i < to && fields < FIELDS; i++) {
+                if (buffer[i] == ',') {
+                    fieldStarts[fields++] = i + 1;
+                }
+            }
+            if (fields < FIELDS) {
+                throw malformed(from, bufferOffset, "expected " + FIELDS + " fields");
+            }
+            int lastEnd = to;
+            for (int i = fieldStarts[FIELDS - 1]; i < to; i++) {
+                if (buffer[i] == ',') {
+                    lastEnd = i;
+                    break;
+                }
+            }
+            fieldStarts[FIELDS] = lastEnd + 1;
+            
+            try {
+                int id = parseInt(fieldStarts[0], fieldStarts[1] - 1);
+                String name = new String(buffer, fieldStarts[1], fieldStarts[2] - 1 - fieldStarts[1], StandardCharsets.UTF_8);
+                int age = parseInt(fieldStarts[2], fieldStarts[3] - 1);
+                String email = new String(buffer, fieldStarts[3], fieldStarts[4] - 1 - fieldStarts[3], StandardCharsets.UTF_8);
+                String course = course(fieldStarts[4], fieldStarts[5] - 1);
+                double gpa = parseDouble(fieldStarts[5], lastEnd);
+                students.add(new Student(id, name, age, email, course, gpa));
+            } catch (NumberFormatException e) {
+                throw malformed(from, bufferOffset, e.getMessage());
+            }
+        }
+        
+        private IOException malformed(int from, long bufferOffset, String reason) {
+            return new IOException("Malformed student record at byte " + (bufferOffset + from) + ": " + reason);
+        }
+        
+        // An optional sign and decimal digits, no spaces. Digits outside ASCII, e.g. Arabic-Indic
+        // ones, go to Integer.parseInt, so the loader accepts exactly what fromFileString does
+        private int parseInt(int from, int to) {
+            boolean negative = from < to && buffer[from] == '-';
+            int i = negative || (from < to && buffer[from] == '+') ? from + 1 : from;
+            if (i == to) {
+                throw new NumberFormatException("bad integer");
+            }
+            // Checked digit by digit rather than by length, so leading zeros are allowed
+            long value = 0;
+            for (; i < to; i++) {
+                if (buffer[i] < 0) {
+                    return Integer.parseInt(new String(buffer, from, to - from, StandardCharsets.UTF_8));
+                }
+                int digit = buffer[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException("bad integer");
+                }
+                value = value * 10 + digit;
+                if (value > (long) Integer.MAX_VALUE + 1) {
+                    throw new NumberFormatException("integer out of range");
+                }
+            }
+            value = negative ? -value : value;
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                throw new NumberFormatException("integer out of range");
+            }
+            return (int) value;
+        }
+        
+        // Plain decimals are parsed here, exactly rounded; anything else, e.g. an exponent or surrounding
+        // spaces, goes to Double.parseDouble, so the loader accepts exactly what fromFileString does
+        private double parseDouble(int from, int to) {
+            int i = from;
+            boolean negative = i < to && buffer[i] == '-';
+            if (i < to && (buffer[i] == '-' || buffer[i] == '+')) {
+                i++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean seenDigit = false;
+            for (; i < to && buffer[i] >= '0' && buffer[i] <= '9'; i++, seenDigit = true) {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (buffer[i] - '0');
+                    digits += mantissa == 0 ? 0 : 1;
+                } else {
+                    exponent++;
+                }
+            }
+            if (i < to && buffer[i] == '.') {
+                for (i++; i < to && buffer[i] >= '0' && buffer[i] <= '9'; i++, seenDigit = true) {
+                    if (digits < 18) {
+                        mantissa = mantissa * 10 + (buffer[i] - '0');
+                        digits += mantissa == 0 ? 0 : 1;
+                        exponent--;
+                    }
+                }
+            }
+            
+            // Exact when both the digits and the power of ten are exact doubles; otherwise let the JDK decide
+            if (seenDigit && i == to && mantissa < (1L << 53) && exponent >= -22) {
+                double value = exponent == 0 ? mantissa : mantissa / POWERS_OF_TEN[-exponent];
+                return negative ? -value : value;
+            }
+            return Double.parseDouble(new String(buffer, from, to - from, StandardCharsets.UTF_8));
+        }
+        
+        // The String for a course, shared with earlier records of the same course
+        private String course(int from, int to) {
+            int hash = 0;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + buffer[i];
+            }
+            int slot = (hash ^ (hash >>> 8)) & (courseCache.length - 1);
+            byte[] cached = courseBytes[slot];
+            if (cached != null && Arrays.equals(cached, 0, cached.length, buffer, from, to)) {
+                return courseCache[slot];
+            }
+            String course = new String(buffer, from, to - from, StandardCharsets.UTF_8);
+            courseBytes[slot] = Arrays.copyOfRange(buffer, from, to);
+            courseCache[slot] = course;
+            return course;
+        }
+    }
+    
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    
+    // Write count random students for trying the loader
+    private static void generate(Path file, int count) throws IOException {
+        String[] names = { "Ann Lee", "Bob Ray", "Joanne Smith", "Li Wei", "Hannah Moore", "Omar Khan" };
+        String[] courses = { "Computer Science", "Mathematics", "Physics", "Biology", "History" };
+        Random random = new Random(count);
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            for (int id = 1; id <= count; id++) {
+                String name = names[random.nextInt(names.length)] + " " + id;
+                double gpa = Math.round(random.nextDouble() * 400) / 100.0;
+                writer.println(new Student(id, name, 18 + random.nextInt(10), "student" + id + "@example.edu",
+                        courses[random.nextInt(courses.length)], gpa).toFileString());
+            }
+        }
+    }
+    
+    // Compare with the readLine() and Student.fromFileString() path
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("generate")) {
+            generate(Paths.get(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+        if (args.length < 1) {
+            System.out.println("Usage: java StudentFileLoader generate file count | file");
+            return;
+        }
+        Path file = Paths.get(args[0]);
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            List<Student> fast = load(file);
+            long fastNanos = System.nanoTime() - start;
+            
+            start = System.nanoTime();
+            List<Student> slow = new ArrayList<>();
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    slow.add(Student.fromFileString(line));
+                }
+            }
+            long slowNanos = System.nanoTime() - start;
+            System.out.printf("%,d students: loader %.0f ms, readLine + split %.0f ms%n", fast.size(),
+                    fastNanos / 1e6, slowNanos / 1e6);
+        }
+    }
+}
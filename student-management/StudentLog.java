@@ -0,0 +1,319 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * StudentLog class - persists the roster as a snapshot file plus an append-only change log,
+ * so an edit costs one appended line instead of a rewrite of the whole file.
+ *
+ * Files, for a snapshot named students.txt:
+ *   students.txt     the snapshot, one Student.toFileString() line per student, by ID
+ *   students.log     changes since the snapshot: "U,<student line>" or "D,<id>"
+ *   students.log.1   an older log being folded into the snapshot
+ *   students.txt.tmp the next snapshot while it is being written
+ *
+ * Records are idempotent - an upsert carries the whole student and a delete only the ID -
+ * so replaying a log that is already in the snapshot changes nothing. That makes every
+ * crash point safe. When the log passes COMPACT_BYTES it is renamed to students.log.1 and
+ * a fresh log is started. A background thread then merges the snapshot with .1 into a
+ * temporary file, forces it to disk, moves it over the snapshot atomically and deletes
+ * .1. Loading applies snapshot, then .1 if present, then the log; call load() once, before
+ * the first change, since compaction only starts after it. A failed compaction keeps .1 and
+ * is retried after RETRY_APPENDS more changes, or on the next start, rather than on every
+ * change.
+ */
+public class StudentLog implements Closeable {
+    static final long COMPACT_BYTES = 4L * 1024 * 1024;
+    static final int RETRY_APPENDS = 10_000;
+    
+    private final Path snapshot;
+    private final Path log;
+    private final Path rotated;
+    private final Path temporary;
+    private final long compactBytes;
+    private final ExecutorService compactor;
+    
+    // Guarded by this
+    private FileChannel channel;
+    private long logBytes;
+    private Future<?> compaction;
+    private int appendsSinceFailure = -1; // -1 while no compaction has failed
+    
+    public StudentLog(Path snapshot) throws IOException {
+        this(snapshot, COMPACT_BYTES);
+    }
+    
+    public StudentLog(Path snapshot, long compactBytes) throws IOException {
+        this.snapshot = snapshot;
+        String name = snapshot.getFileName().toString();
+        String base = name.contains(".") ? name.substring(0, name.lastIndexOf('.')) : name;
+        this.log = snapshot.resolveSibling(base + ".log");
+        this.rotated = snapshot.resolveSibling(base + ".log.1");
+        this.temporary = snapshot.resolveSibling(name + ".tmp");
+        this.compactBytes = compactBytes;
+        this.compactor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "student-log-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        Files.deleteIfExists(temporary); // Left by a compaction that did not finish
+        channel = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        logBytes = channel.size();
+    }
+    
+    // Rebuild the roster into store from snapshot, .1 and log; returns false if there was no data at all
+    public synchronized boolean load(StudentStore store) throws IOException {
+        boolean found = false;
+        if (Files.exists(snapshot)) {
+            for (Student student : StudentFileLoader.load(snapshot)) {
+                store.add(student);
+            }
+            found = true;
+        }
+        for (Path changes : new Path[] { rotated, log }) {
+            if (Files.exists(changes)) {
+                found |= replay(changes, store);
+            }
+        }
+        
+        // Finish folding in a rotated log that an earlier run left behind
+        if (Files.exists(rotated) && compaction == null) {
+            compaction = compactor.submit(this::compactRotated);
+        }
+        return found;
+    }
+    
+    public synchronized void upsert(Student student) throws IOException {
+        append("U," + student.toFileString() + "\n");
+    }
+    
+    public synchronized void delete(int studentId) throws IOException {
+        append("D," + studentId + "\n");
+    }
+    
+    // Start a compaction now if the log has anything in it; returns its future, or null if none was needed
+    public synchronized Future<?> compact() throws IOException {
+        if (compaction != null && !compaction.isDone()) {
+            return compaction;
+        }
+        if (Files.exists(rotated)) {
+            // An earlier compaction failed; retry it before rotating again, or .1 would be overwritten
+            compaction = compactor.submit(this::compactRotated);
+            return compaction;
+        }
+        if (logBytes == 0) {
+            return null;
+        }
+        channel.close();
+        Files.move(log, rotated, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        logBytes = 0;
+        compaction = compactor.submit(this::compactRotated);
+        return compaction;
+    }
+    
+    // Wait for a running compaction, then close the log
+    @Override
+    public void close() throws IOException {
+        Future<?> running;
+        synchronized (this) {
+            running = compaction;
+        }
+        try {
+            if (running != null) {
+                running.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Already reported by the compactor; the rotated log is kept for the next start
+        } finally {
+            compactor.shutdown();
+            synchronized (this) {
+                channel.close();
+            }
+        }
+    }
+    
+    private void append(String record) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(record.getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()) {
+            logBytes += channel.write(bytes);
+        }
+        if (logBytes >= compactBytes && (compaction == null || compaction.isDone()) && !backingOff()) {
+            compact();
+        }
+    }
+    
+    // After a failed compaction, hold off automatic retries until RETRY_APPENDS more changes
+    private boolean backingOff() {
+        if (appendsSinceFailure < 0 && compaction != null && compaction.isDone() && failed(compaction)) {
+            appendsSinceFailure = 0;
+        }
+        if (appendsSinceFailure < 0) {
+            return false;
+        }
+        if (++appendsSinceFailure < RETRY_APPENDS) {
+            return true;
+        }
+        appendsSinceFailure = -1;
+        return false;
+    }
+    
+    private static boolean failed(Future<?> done) {
+        try {
+            done.get();
+            return false;
+        } catch (ExecutionException | CancellationException e) {
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    // Apply one change log to store; a torn last line from a crash is skipped
+    private static boolean replay(Path changes, StudentStore store) throws IOException {
+        boolean any = false;
+        try (BufferedReader reader = Files.newBufferedReader(changes, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    if (line.startsWith("U,")) {
+                        Student student = Student.fromFileString(line.substring(2));
+                        store.remove(student.getStudentId());
+                        store.add(student);
+                        any = true;
+                    } else if (line.startsWith("D,")) {
+                        store.remove(Integer.parseInt(line.substring(2)));
+                        any = true;
+                    }
+                } catch (RuntimeException e) {
+                    System.out.println("Skipping damaged log line in " + changes.getFileName() + ": " + line);
+                }
+            }
+        }
+        return any;
+    }
+    
+    // Runs on the compactor thread; only it touches the snapshot, .1 and the temporary file
+    private Void compactRotated() throws IOException {
+        try {
+            // The rotated log is bounded by compactBytes, so its net effect fits in memory
+            TreeMap<Integer, String> changes = new TreeMap<>();
+            try (BufferedReader reader = Files.newBufferedReader(rotated, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        if (line.startsWith("U,")) {
+                            Student.fromFileString(line.substring(2)); // Check it parses, as load() will
+                            changes.put(idOf(line.substring(2)), line.substring(2));
+                        } else if (line.startsWith("D,")) {
+                            changes.put(Integer.parseInt(line.substring(2)), null);
+                        }
+                    } catch (RuntimeException e) {
+                        // A torn or damaged line; load() skips it too
+                    }
+                }
+            }
+            
+            boolean sorted;
+            try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                sorted = mergeSorted(changes, writer);
+            }
+            if (!sorted) {
+                try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                    mergeUnsorted(changes, writer);
+                }
+            }
+            try (FileChannel written = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                written.force(true);
+            }
+            Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(rotated);
+            return null;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Compaction failed, will retry later: " + e.getMessage());
+            throw e;
+        }
+    }
+    
+    // Stream the snapshot, which is written in ID order, merging the changes in; false if it was not in order
+    private boolean mergeSorted(TreeMap<Integer, String> changes, BufferedWriter writer) throws IOException {
+        Iterator<Map.Entry<Integer, String>> pending = changes.entrySet().iterator();
+        Map.Entry<Integer, String> next = pending.hasNext() ? pending.next() : null;
+        int previous = Integer.MIN_VALUE;
+        if (Files.exists(snapshot)) {
+            try (BufferedReader reader = Files.newBufferedReader(snapshot, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    int id = idOf(line);
+                    if (id <= previous) {
+                        return false;
+                    }
+                    previous = id;
+                    while (next != null && next.getKey() < id) {
+                        writeIfPresent(writer, next.getValue());
+                        next = pending.hasNext() ? pending.next() : null;
+                    }
+                    if (next != null && next.getKey() == id) {
+                        writeIfPresent(writer, next.getValue());
+                        next = pending.hasNext() ? pending.next() : null;
+                    } else {
+                        writer.write(line);
+                        writer.newLine();
+                    }
+                }
+            }
+        }
+        while (next != null) {
+            writeIfPresent(writer, next.getValue());
+            next = pending.hasNext() ? pending.next() : null;
+        }
+        return true;
+    }
+    
+    // Fallback for a snapshot saved out of ID order: merge everything in memory
+    private void mergeUnsorted(TreeMap<Integer, String> changes, BufferedWriter writer) throws IOException {
+        TreeMap<Integer, String> all = new TreeMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(snapshot, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    all.put(idOf(line), line);
+                }
+            }
+        }
+        for (Map.Entry<Integer, String> change : changes.entrySet()) {
+            if (change.getValue() == null) {
+                all.remove(change.getKey());
+            } else {
+                all.put(change.getKey(), change.getValue());
+            }
+        }
+        for (String line : all.values()) {
+            writer.write(line);
+            writer.newLine();
+        }
+    }
+    
+    private static void writeIfPresent(BufferedWriter writer, String line) throws IOException {
+        if (line != null) {
+            writer.write(line);
+            writer.newLine();
+        }
+    }
+    
+    private static int idOf(String studentLine) {
+        int comma = studentLine.indexOf(',');
+        return Integer.parseInt(comma < 0 ? studentLine : studentLine.substring(0, comma));
+    }
+}
@@ -1,18 +1,20 @@
 import java.util.*;
 import java.io.*;
+import java.nio.file.Paths;
 
 /**
  * Student Management System - A comprehensive system to manage student records
  * with CRUD operations and file persistence
  */
 public class StudentManagementSystem {
-    private ArrayList<Student> students;
+    private StudentStore students;
     private Scanner scanner;
     private final String DATA_FILE = "students.txt";
     private int nextId;
+    private StudentLog changeLog;
     
     public StudentManagementSystem() {
-        students = new ArrayList<>();
+        students = new StudentStore();
         scanner = new Scanner(System.in);
         nextId = 1;
         loadStudentsFromFile();
@@ -33,7 +35,7 @@ public class StudentManagementSystem {
                     case 4: updateStudent(); break;
                     case 5: deleteStudent(); break;
                     case 6: displayStatistics(); break;
-                    case 7: 
+                    case 7:
                         saveStudentsToFile();
                         System.out.println("Thank you for using Student Management System!");
                         return;
@@ -89,6 +91,7 @@ public class StudentManagementSystem {
         
         Student student = new Student(nextId++, name, age, email, course, gpa);
         students.add(student);
+        logUpsert(student);
         
         System.out.println("Student added successfully!");
         System.out.println(student);
@@ -104,7 +107,7 @@ public class StudentManagementSystem {
         System.out.println("Total Students: " + students.size());
         System.out.println("-".repeat(80));
         
-        for (Student student : students) {
+        for (Student student : students.all()) {
             System.out.println(student);
         }
     }
@@ -118,6 +121,8 @@ public class StudentManagementSystem {
         System.out.println("Search by:");
         System.out.println("1. Student ID");
         System.out.println("2. Name");
+        System.out.println("3. Name prefix");
+        System.out.println("4. Course");
         System.out.print("Enter choice: ");
         
         int searchChoice = scanner.nextInt();
@@ -127,7 +132,7 @@ public class StudentManagementSystem {
             case 1:
                 System.out.print("Enter Student ID: ");
                 int id = scanner.nextInt();
-                Student foundById = findStudentById(id);
+                Student foundById = students.get(id);
                 if (foundById != null) {
                     System.out.println("Student found:");
                     System.out.println(foundById);
@@ -135,32 +140,47 @@ public class StudentManagementSystem {
                     System.out.println("Student with ID " + id + " not found.");
                 }
                 break;
-                
+            
             case 2:
                 System.out.print("Enter student name: ");
                 String name = scanner.nextLine();
-                ArrayList<Student> foundByName = findStudentsByName(name);
-                if (!foundByName.isEmpty()) {
-                    System.out.println("Students found:");
-                    for (Student student : foundByName) {
-                        System.out.println(student);
-                    }
-                } else {
-                    System.out.println("No students found with name containing: " + name);
-                }
+                printFound(students.findByName(name), "name containing: " + name);
                 break;
-                
+            
+            case 3:
+                System.out.print("Enter start of name: ");
+                String prefix = scanner.nextLine();
+                printFound(students.findByNamePrefix(prefix), "name starting with: " + prefix);
+                break;
+            
+            case 4:
+                System.out.print("Enter course: ");
+                String course = scanner.nextLine();
+                printFound(students.findByCourse(course), "course: " + course);
+                break;
+            
             default:
                 System.out.println("Invalid search option.");
         }
     }
     
+    private void printFound(List<Student> found, String criterion) {
+        if (!found.isEmpty()) {
+            System.out.println("Students found:");
+            for (Student student : found) {
+                System.out.println(student);
+            }
+        } else {
+            System.out.println("No students found with " + criterion);
+        }
+    }
+    
     private void updateStudent() {
         System.out.print("Enter Student ID to update: ");
         int id = scanner.nextInt();
         scanner.nextLine();
         
-        Student student = findStudentById(id);
+        Student student = students.get(id);
         if (student == null) {
             System.out.println("Student with ID " + id + " not found.");
             return;
@@ -180,28 +200,33 @@ public class StudentManagementSystem {
         int updateChoice = scanner.nextInt();
         scanner.nextLine();
         
+        // Read the new value first; the store applies it so the indexes follow
         switch (updateChoice) {
             case 1:
                 System.out.print("Enter new name: ");
-                student.setName(scanner.nextLine());
+                String newName = scanner.nextLine();
+                students.update(id, s -> s.setName(newName));
                 break;
             case 2:
                 System.out.print("Enter new age: ");
-                student.setAge(scanner.nextInt());
+                int newAge = scanner.nextInt();
+                students.update(id, s -> s.setAge(newAge));
                 break;
             case 3:
                 System.out.print("Enter new email: ");
-                student.setEmail(scanner.nextLine());
+                String newEmail = scanner.nextLine();
+                students.update(id, s -> s.setEmail(newEmail));
                 break;
             case 4:
                 System.out.print("Enter new course: ");
-                student.setCourse(scanner.nextLine());
+                String newCourse = scanner.nextLine();
+                students.update(id, s -> s.setCourse(newCourse));
                 break;
             case 5:
                 System.out.print("Enter new GPA: ");
                 double newGpa = scanner.nextDouble();
                 if (newGpa >= 0.0 && newGpa <= 4.0) {
-                    student.setGpa(newGpa);
+                    students.update(id, s -> s.setGpa(newGpa));
                 } else {
                     System.out.println("Invalid GPA. Update cancelled.");
                     return;
@@ -212,6 +237,7 @@ public class StudentManagementSystem {
                 return;
         }
         
+        logUpsert(student);
         System.out.println("Student updated successfully!");
         System.out.println(student);
     }
@@ -220,7 +246,7 @@ public class StudentManagementSystem {
         System.out.print("Enter Student ID to delete: ");
         int id = scanner.nextInt();
         
-        Student student = findStudentById(id);
+        Student student = students.get(id);
         if (student == null) {
             System.out.println("Student with ID " + id + " not found.");
             return;
@@ -234,7 +260,8 @@ public class StudentManagementSystem {
         String confirmation = scanner.nextLine().toLowerCase();
         
         if (confirmation.equals("y") || confirmation.equals("yes")) {
-            students.remove(student);
+            students.remove(id);
+            logDelete(id);
             System.out.println("Student deleted successfully!");
         } else {
             System.out.println("Deletion cancelled.");
@@ -255,19 +282,17 @@ public class StudentManagementSystem {
         double highestGpa = 0;
         double lowestGpa = 4.0;
         
-        Map<String, Integer> courseCount = new HashMap<>();
-        
-        for (Student student : students) {
+        for (Student student : students.all()) {
             double gpa = student.getGpa();
             totalGpa += gpa;
             
             if (gpa > highestGpa) highestGpa = gpa;
             if (gpa < lowestGpa) lowestGpa = gpa;
-            
-            String course = student.getCourse();
-            courseCount.put(course, courseCount.getOrDefault(course, 0) + 1);
         }
         
+        // Course counts come straight from the course index
+        Map<String, Integer> courseCount = students.courseCounts();
+        
         double averageGpa = totalGpa / students.size();
         
         System.out.printf("Average GPA: %.2f%n", averageGpa);
@@ -280,49 +305,51 @@ public class StudentManagementSystem {
         }
     }
     
-    private Student findStudentById(int id) {
-        for (Student student : students) {
-            if (student.getStudentId() == id) {
-                return student;
+    // Rebuild the roster from the snapshot plus the change logs written since
+    private void loadStudentsFromFile() {
+        try {
+            changeLog = new StudentLog(Paths.get(DATA_FILE));
+            if (changeLog.load(students)) {
+                students.forEach(student -> nextId = Math.max(nextId, student.getStudentId() + 1));
+                System.out.println("Loaded " + students.size() + " students from file.");
+            } else {
+                System.out.println("No existing data file found. Starting fresh.");
             }
+        } catch (IOException e) {
+            System.out.println("Error loading data: " + e.getMessage());
         }
-        return null;
     }
     
-    private ArrayList<Student> findStudentsByName(String name) {
-        ArrayList<Student> found = new ArrayList<>();
-        for (Student student : students) {
-            if (student.getName().toLowerCase().contains(name.toLowerCase())) {
-                found.add(student);
-            }
+    // Each edit is appended to the change log as it happens, so this only has to close it
+    private void saveStudentsToFile() {
+        if (changeLog == null) {
+            return;
+        }
+        try {
+            changeLog.close();
+            System.out.println("Data saved successfully!");
+        } catch (IOException e) {
+            System.out.println("Error saving data: " + e.getMessage());
         }
-        return found;
     }
     
-    private void loadStudentsFromFile() {
-        try (BufferedReader reader = new BufferedReader(new FileReader(DATA_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                Student student = Student.fromFileString(line);
-                students.add(student);
-                if (student.getStudentId() >= nextId) {
-                    nextId = student.getStudentId() + 1;
-                }
+    private void logUpsert(Student student) {
+        try {
+            if (changeLog == null) {
+                throw new IOException("the change log could not be opened");
             }
-            System.out.println("Loaded " + students.size() + " students from file.");
-        } catch (FileNotFoundException e) {
-            System.out.println("No existing data file found. Starting fresh.");
+            changeLog.upsert(student);
         } catch (IOException e) {
-            System.out.println("Error loading data: " + e.getMessage());
+            System.out.println("Error saving data: " + e.getMessage());
         }
     }
     
-    private void saveStudentsToFile() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(DATA_FILE))) {
-            for (Student student : students) {
-                writer.println(student.toFileString());
+    private void logDelete(int id) {
+        try {
+            if (changeLog == null) {
+                throw new IOException("the change log could not be opened");
             }
-            System.out.println("Data saved successfully!");
+            changeLog.delete(id);
         } catch (IOException e) {
             System.out.println("Error saving data: " + e.getMessage());
         }
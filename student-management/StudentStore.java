@@ -0,0 +1,425 @@
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * StudentStore class - holds the student roster with indexes so lookups do not scan it.
+ *
+ * - By ID: an open-addressing hash table of primitive int keys pointing into a dense array
+ *   of students, so get, add and remove are O(1) and nothing is boxed.
+ * - By name, ignoring case: a sorted map of lower-cased names for prefix search, and a
+ *   trigram index (every three-character run of each name) for substring search. A
+ *   substring query only checks the students whose names contain its rarest trigram.
+ * - By course, ignoring case: the IDs of the students in each lower-cased course, and the
+ *   spelling of the course when it was first indexed, for display.
+ *
+ * Changes must go through add, update and remove, which take a student out of the
+ * indexes and put it back, so changing a Student through its setters directly leaves the
+ * indexes stale. Not thread-safe.
+ */
+public class StudentStore {
+    private static final int EMPTY = Integer.MIN_VALUE;
+    
+    // ID table: keys[slot] is an ID or EMPTY, positions[slot] its index in students
+    private int[] keys;
+    private int[] positions;
+    private int mask;
+    private Student[] students = new Student[16];
+    private String[] lowerNames = new String[16];
+    private int size;
+    
+    private final TreeMap<String, IntSet> byName = new TreeMap<>();
+    private final TrigramIndex byTrigram = new TrigramIndex();
+    private final Map<String, IntSet> byCourse = new HashMap<>();
+    private final Map<String, String> courseNames = new HashMap<>();
+    
+    public StudentStore() {
+        keys = new int[32];
+        positions = new int[32];
+        mask = 31;
+        Arrays.fill(keys, EMPTY);
+    }
+    
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    
+    public Student get(int id) {
+        int slot = find(id);
+        return slot < 0 ? null : students[positions[slot]];
+    }
+    
+    // Add a student; returns false if one with the same ID is already stored
+    public boolean add(Student student) {
+        int id = student.getStudentId();
+        if (id == EMPTY) {
+            throw new IllegalArgumentException("Invalid student ID: " + id);
+        }
+        if (find(id) >= 0) {
+            return false;
+        }
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        if (size == students.length) {
+            students = Arrays.copyOf(students, size * 2);
+            lowerNames = Arrays.copyOf(lowerNames, size * 2);
+        }
+        
+        int slot = home(id);
+        while (keys[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = id;
+        positions[slot] = size;
+        students[size] = student;
+        size++;
+        index(student, size - 1);
+        return true;
+    }
+    
+    // Apply a change to a stored student and re-index it; returns false if the ID is not stored
+    public boolean update(int id, Consumer<Student> change) {
+        int slot = find(id);
+        if (slot < 0) {
+            return false;
+        }
+        int position = positions[slot];
+        Student student = students[position];
+        unindex(student, position);
+        try {
+            change.accept(student);
+        } finally {
+            index(student, position);
+        }
+        return true;
+    }
+    
+    // Remove a student; returns it, or null if the ID is not stored
+    public Student remove(int id) {
+        int slot = find(id);
+        if (slot < 0) {
+            return null;
+        }
+        int position = positions[slot];
+        Student student = students[position];
+        unindex(student, position);
+        deleteSlot(slot);
+        
+        // Move the last student into the gap so the array stays dense
+        size--;
+        if (position != size) {
+            students[position] = students[size];
+            lowerNames[position] = lowerNames[size];
+            positions[find(students[position].getStudentId())] = position;
+        }
+        students[size] = null;
+        lowerNames[size] = null;
+        return student;
+    }
+    
+    // Students whose names contain text, ignoring case, in ID order
+    public List<Student> findByName(String text) {
+        String query = text.toLowerCase(Locale.ROOT);
+        List<Student> found = new ArrayList<>();
+        if (query.length() < 3) {
+            // Too short for a trigram; the lower-cased names are still cheaper than Student.getName()
+            for (int i = 0; i < size; i++) {
+                if (lowerNames[i].contains(query)) {
+                    found.add(students[i]);
+                }
+            }
+        } else {
+            IntSet rarest = null;
+            for (int i = 0; i + 3 <= query.length(); i++) {
+                IntSet ids = byTrigram.get(trigram(query, i));
+                if (ids == null || ids.size() == 0) {
+                    return found;
+                }
+                if (rarest == null || ids.size() < rarest.size()) {
+                    rarest = ids;
+                }
+            }
+            for (int k = 0; k < rarest.capacity(); k++) {
+                int id = rarest.at(k);
+                if (id != EMPTY && lowerNames[positions[find(id)]].contains(query)) {
+                    found.add(get(id));
+                }
+            }
+        }
+        return sortedById(found);
+    }
+    
+    // Students whose names start with prefix, ignoring case, in name order
+    public List<Student> findByNamePrefix(String prefix) {
+        String from = prefix.toLowerCase(Locale.ROOT);
+        List<Student> found = new ArrayList<>();
+        for (IntSet ids : byName.subMap(from, true, from + Character.MAX_VALUE, false).values()) {
+            collect(ids, found);
+        }
+        return found;
+    }
+    
+    // Students in a course, ignoring case, in ID order
+    public List<Student> findByCourse(String course) {
+        List<Student> found = new ArrayList<>();
+        IntSet ids = byCourse.get(course.toLowerCase(Locale.ROOT));
+        if (ids != null) {
+            collect(ids, found);
+        }
+        return sortedById(found);
+    }
+    
+    // Number of students in each course, ignoring case, from the course index
+    public Map<String, Integer> courseCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Map.Entry<String, IntSet> entry : byCourse.entrySet()) {
+            counts.put(courseNames.get(entry.getKey()), entry.getValue().size());
+        }
+        return counts;
+    }
+    
+    // All students in ID order
+    public List<Student> all() {
+        return sortedById(new ArrayList<>(Arrays.asList(students).subList(0, size)));
+    }
+    
+    // Visit every student in no particular order, without copying
+    public void forEach(Consumer<Student> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(students[i]);
+        }
+    }
+    
+    private void index(Student student, int position) {
+        int id = student.getStudentId();
+        String lower = student.getName().toLowerCase(Locale.ROOT);
+        lowerNames[position] = lower;
+        byName.computeIfAbsent(lower, k -> new IntSet()).add(id);
+        for (int i = 0; i + 3 <= lower.length(); i++) {
+            byTrigram.getOrCreate(trigram(lower, i)).add(id);
+        }
+        String course = student.getCourse().toLowerCase(Locale.ROOT);
+        byCourse.computeIfAbsent(course, k -> new IntSet()).add(id);
+        courseNames.putIfAbsent(course, student.getCourse());
+    }
+    
+    private void unindex(Student student, int position) {
+        int id = student.getStudentId();
+        String lower = lowerNames[position];
+        removeFrom(byName, lower, id);
+        for (int i = 0; i + 3 <= lower.length(); i++) {
+            IntSet ids = byTrigram.get(trigram(lower, i));
+            if (ids != null) {
+                ids.remove(id);
+            }
+        }
+        String course = student.getCourse().toLowerCase(Locale.ROOT);
+        removeFrom(byCourse, course, id);
+        if (!byCourse.containsKey(course)) {
+            courseNames.remove(course);
+        }
+    }
+    
+    private static <K> void removeFrom(Map<K, IntSet> index, K key, int id) {
+        IntSet ids = index.get(key);
+        if (ids != null && ids.remove(id) && ids.size() == 0) {
+            index.remove(key);
+        }
+    }
+    
+    private void collect(IntSet ids, List<Student> found) {
+        for (int k = 0; k < ids.capacity(); k++) {
+            if (ids.at(k) != EMPTY) {
+                found.add(get(ids.at(k)));
+            }
+        }
+    }
+    
+    private static List<Student> sortedById(List<Student> list) {
+        list.sort(Comparator.comparingInt(Student::getStudentId));
+        return list;
+    }
+    
+    private static long trigram(String text, int i) {
+        return ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+    }
+    
+    private int find(int id) {
+        int slot = home(id);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == id) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    // Backward-shift deletion, so probe runs never need tombstones
+    private void deleteSlot(int slot) {
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = home(keys[next]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                positions[hole] = positions[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+    }
+    
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldPositions = positions;
+        keys = new int[capacity];
+        positions = new int[capacity];
+        mask = capacity - 1;
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = home(oldKeys[i]);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                positions[slot] = oldPositions[i];
+            }
+        }
+    }
+    
+    private int home(int id) {
+        return mix(id) & mask;
+    }
+    
+    private static int mix(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+    
+    /**
+     * Trigram to IDs, keyed by primitive longs so indexing a name boxes nothing. The set of
+     * trigrams seen stays small, so emptied entries are kept rather than deleted.
+     */
+    private static final class TrigramIndex {
+        private long[] trigrams = new long[1024];
+        private IntSet[] ids = new IntSet[1024];
+        private int size;
+        
+        IntSet get(long trigram) {
+            int mask = trigrams.length - 1;
+            for (int slot = slotOf(trigram, mask); ids[slot] != null; slot = (slot + 1) & mask) {
+                if (trigrams[slot] == trigram) {
+                    return ids[slot];
+                }
+            }
+            return null;
+        }
+        
+        IntSet getOrCreate(long trigram) {
+            IntSet found = get(trigram);
+            if (found != null) {
+                return found;
+            }
+            if ((size + 1) * 2 > trigrams.length) {
+                grow();
+            }
+            IntSet created = new IntSet();
+            put(trigram, created);
+            size++;
+            return created;
+        }
+        
+        private void put(long trigram, IntSet set) {
+            int mask = trigrams.length - 1;
+            int slot = slotOf(trigram, mask);
+            while (ids[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            trigrams[slot] = trigram;
+            ids[slot] = set;
+        }
+        
+        private void grow() {
+            long[] oldTrigrams = trigrams;
+            IntSet[] oldIds = ids;
+            trigrams = new long[oldTrigrams.length * 2];
+            ids = new IntSet[oldIds.length * 2];
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] != null) {
+                    put(oldTrigrams[i], oldIds[i]);
+                }
+            }
+        }
+        
+        private static int slotOf(long trigram, int mask) {
+            long h = trigram * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+    
+    /**
+     * A growable open-addressing set of IDs; most index entries hold only a few
+     */
+    private static final class IntSet {
+        private int[] ids = { EMPTY, EMPTY, EMPTY, EMPTY };
+        private int size;
+        
+        int size() { return size; }
+        int capacity() { return ids.length; }
+        int at(int slot) { return ids[slot]; }
+        
+        void add(int id) {
+            if ((size + 1) * 4 > ids.length * 3) {
+                grow();
+            }
+            int mask = ids.length - 1;
+            int slot = mix(id) & mask;
+            while (ids[slot] != EMPTY) {
+                if (ids[slot] == id) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            ids[slot] = id;
+            size++;
+        }
+        
+        boolean remove(int id) {
+            int mask = ids.length - 1;
+            int slot = mix(id) & mask;
+            while (ids[slot] != id) {
+                if (ids[slot] == EMPTY) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (ids[next] != EMPTY) {
+                int home = mix(ids[next]) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    ids[hole] = ids[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            ids[hole] = EMPTY;
+            size--;
+            return true;
+        }
+        
+        private void grow() {
+            int[] old = ids;
+            ids = new int[old.length * 2];
+            Arrays.fill(ids, EMPTY);
+            size = 0;
+            for (int id : old) {
+                if (id != EMPTY) {
+                    add(id);
+                }
+            }
+        }
+    }
+}